@@ -0,0 +1,58 @@
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import com.ibm.vie.mazerunner.MapBoard;
+import com.ibm.vie.mazerunner.squares.Treasure;
+import com.ibm.vie.mazerunner.util.BenchmarkRunner;
+import com.ibm.vie.mazerunner.util.BoardBenchmark;
+
+// Benchmarks the searches and the tour planning of Pathfinding, on the same boards and
+// with the same options as BoardBenchmark, whose board benchmarks run first. The
+// results of both go to one JSON file.
+//
+// It needs the engine sources as well as the player's, which lib/treasurehunt.jar is too
+// old for, so it lives outside drjava. Compile it as the BoardBenchmark javadoc says, then
+// from the project directory:
+// java -cp "lib/commons-cli-1.5.0.jar:bin" PathfindingBenchmark
+//     -boards=boards -generate=500,2000 -out=bench.json
+public class PathfindingBenchmark {
+    public static void main(String[] args) throws Exception {
+        BoardBenchmark.run("PathfindingBenchmark", args, PathfindingBenchmark::benchmark);
+    }
+
+    private static void benchmark(BenchmarkRunner runner, Path file, MapBoard board) throws Exception {
+        String name = board.getName();
+        List<Treasure> treasures = board.getTreasures();
+        Coordinate start = new Coordinate(board.getStartingLocation());
+        // The treasure that comes last in row order, usually far from the start
+        Coordinate target = new Coordinate(treasures.get(treasures.size() - 1).getLocation());
+
+        runner.measure("Pathfinding.dijkstra", name, 1, () -> {
+            HashMap<Coordinate, Integer> distance = new HashMap<>();
+            HashMap<Coordinate, Coordinate> prev = new HashMap<>();
+            Pathfinding.dijkstra(board, start, distance, prev, false, new Coordinate[0]);
+            return distance.get(target);
+        });
+        runner.measure("Pathfinding.Astar", name, 1, () -> {
+            HashMap<Coordinate, Integer> distance = new HashMap<>();
+            HashMap<Coordinate, Coordinate> prev = new HashMap<>();
+            Pathfinding.Astar(board, start, distance, prev, target);
+            return distance.get(target);
+        });
+        runner.measure("ActualCostSelector.init", name, 1, () -> {
+            Pathfinding.ActualCostSelector cs = new Pathfinding.ActualCostSelector();
+            cs.init(board);
+            return cs.distances[0][cs.distances.length - 1];
+        });
+
+        if (runner.isSelected("Pathfinding.optimizeTreasureOrdering")) {
+            Pathfinding.ActualCostSelector cs = new Pathfinding.ActualCostSelector();
+            cs.init(board);
+            ArrayList<Coordinate> sorted = Pathfinding.getSortedTreasures(board, cs);
+            runner.measure("Pathfinding.optimizeTreasureOrdering", name, 1,
+                    () -> Pathfinding.optimizeTreasureOrdering(sorted, cs).size());
+        }
+    }
+}
@@ -0,0 +1,374 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.stream.IntStream;
+
+// Hierarchical pathfinding (HPA*) for very large boards. The board is cut into square clusters.
+// Where two clusters touch, each run of open cells along the border (an "entrance") gets one or
+// two pairs of transition cells, one on each side. Those cells are the nodes of a much smaller
+// abstract graph:
+// - an inter edge steps across the border between the two cells of a pair
+// - an intra edge joins two nodes of the same cluster, costing the cheapest path between them
+//   inside the cluster, which is worked out once when the graph is built
+//
+// Any other cell (a treasure, the start) is inserted as a node joined to the nodes of its
+// cluster. Queries then search the abstract graph, and a path is only turned back into cells
+// ("refined") when it is asked for, one cluster at a time.
+//
+// Paths must cross clusters at the transitions, so their costs can be a little more than the
+// flat searches'. Walls are never entered.
+public class ClusterGraph {
+    // Boards with fewer cells than this are quick enough to search flat, and exactly
+    public static final int MIN_CELLS = 500 * 500;
+    public static final int CLUSTER_SIZE = 32;
+    // Entrances at least this long get a transition at each end instead of one in the middle
+    public static final int MAX_ENTRANCE = 6;
+
+    private static final int NONE = -1;
+
+    public final int width, height;
+    // Cost of stepping onto each cell, shared with a GridSearch
+    public final int[] cost;
+    private final int clustersX, clustersY;
+
+    // Abstract nodes: the cell each one is on, and the node on each cell
+    private int nodeCount;
+    private int[] nodeCell = new int[64];
+    private final int[] nodeOf;
+    // Each cluster's nodes
+    private final int[][] clusterNodes;
+    private final int[] clusterNodeCount;
+    // Outgoing edges of each node
+    private int[][] edgeTo = new int[64][];
+    private int[][] edgeCost = new int[64][];
+    private int[] edgeCount = new int[64];
+
+    // Builds the abstract graph for the board GridSearch was made for, sharing its step costs.
+    // The intra edges are worked out on the fork-join pool, one cluster per task.
+    public ClusterGraph(GridSearch grid) {
+        width = grid.width;
+        height = grid.height;
+        cost = grid.cost;
+        clustersX = (width + CLUSTER_SIZE - 1) / CLUSTER_SIZE;
+        clustersY = (height + CLUSTER_SIZE - 1) / CLUSTER_SIZE;
+        nodeOf = new int[cost.length];
+        Arrays.fill(nodeOf, NONE);
+        clusterNodes = new int[clustersX * clustersY][8];
+        clusterNodeCount = new int[clustersX * clustersY];
+
+        // Entrances across the vertical borders, then across the horizontal ones
+        for (int col = CLUSTER_SIZE; col < width; col += CLUSTER_SIZE)
+            for (int top = 0; top < height; top += CLUSTER_SIZE)
+                addEntrances(top * width + col - 1, 1, width, Math.min(CLUSTER_SIZE, height - top));
+        for (int row = CLUSTER_SIZE; row < height; row += CLUSTER_SIZE)
+            for (int left = 0; left < width; left += CLUSTER_SIZE)
+                addEntrances((row - 1) * width + left, width, 1, Math.min(CLUSTER_SIZE, width - left));
+
+        // Only a node's own task adds edges from it, so the clusters can be done at once
+        int[] counts = clusterNodeCount.clone();
+        IntStream.range(0, clusterNodes.length).parallel().forEach(k -> {
+            LocalSearch local = new LocalSearch();
+            for (int i = 0; i < counts[k]; ++i) {
+                int u = clusterNodes[k][i];
+                local.run(nodeCell[u], NONE);
+                for (int j = 0; j < counts[k]; ++j) {
+                    int v = clusterNodes[k][j];
+                    int d = local.distance(nodeCell[v]);
+                    if (v != u && d != GridSearch.UNREACHED)
+                        addEdge(u, v, d);
+                }
+            }
+        });
+    }
+
+    // The node on `cell`, inserting one joined to the rest of its cluster if there is none yet.
+    // Not safe to call while other threads use the graph.
+    public int insert(int cell) {
+        if (nodeOf[cell] != NONE)
+            return nodeOf[cell];
+        int u = addNode(cell);
+        if (cost[cell] == GridSearch.WALL_COST)
+            return u;
+
+        int k = cluster(cell);
+        LocalSearch local = new LocalSearch();
+        local.run(cell, NONE);
+        for (int j = 0; j < clusterNodeCount[k]; ++j) {
+            int v = clusterNodes[k][j];
+            int d = local.distance(nodeCell[v]);
+            if (v == u || d == GridSearch.UNREACHED)
+                continue;
+            addEdge(u, v, d);
+            // The same path walked backwards steps onto `cell` instead of onto v
+            addEdge(v, u, d - cost[nodeCell[v]] + cost[cell]);
+        }
+        return u;
+    }
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    // Costs of the cheapest abstract paths from node `from` to each of `to`, UNREACHED where
+    // there is none. Safe to call from several threads at once.
+    public int[] distances(int from, int[] to) {
+        AbstractSearch search = new AbstractSearch();
+        search.run(from, NONE);
+        int[] result = new int[to.length];
+        for (int i = 0; i < to.length; ++i)
+            result[i] = search.distance[to[i]];
+        return result;
+    }
+
+    // The cells of the cheapest abstract path from node `from` to node `to`, refined inside each
+    // cluster. Empty if there is no path. Safe to call from several threads at once.
+    public ArrayList<Coordinate> path(int from, int to) {
+        AbstractSearch search = new AbstractSearch();
+        search.run(from, to);
+        ArrayList<Coordinate> spath = new ArrayList<>();
+        if (search.distance[to] == GridSearch.UNREACHED)
+            return spath;
+
+        ArrayList<Integer> nodes = new ArrayList<>();
+        for (int u = to; u != NONE; u = search.parent[u])
+            nodes.add(u);
+        Collections.reverse(nodes);
+
+        spath.add(coordinate(nodeCell[from]));
+        LocalSearch local = new LocalSearch();
+        for (int i = 1; i < nodes.size(); ++i) {
+            int a = nodeCell[nodes.get(i - 1)], b = nodeCell[nodes.get(i)];
+            if (cluster(a) != cluster(b)) {
+                // Inter edge, a single step over the border
+                spath.add(coordinate(b));
+                continue;
+            }
+            local.run(a, b);
+            int at = spath.size();
+            for (int c = b; c != a; c = local.parent(c))
+                spath.add(at, coordinate(c));
+        }
+        return spath;
+    }
+
+    private Coordinate coordinate(int cell) {
+        return new Coordinate(cell % width, cell / width);
+    }
+
+    private int cluster(int cell) {
+        return (cell / width / CLUSTER_SIZE) * clustersX + (cell % width) / CLUSTER_SIZE;
+    }
+
+    // Adds the transitions for the entrances along one border. Cell `first` is the first on the
+    // near side, `across` steps to the far side and `along` to the next cell on the border.
+    private void addEntrances(int first, int across, int along, int length) {
+        int runStart = NONE;
+        for (int i = 0; i <= length; ++i) {
+            int a = first + i * along;
+            boolean open = i < length && cost[a] != GridSearch.WALL_COST
+                    && cost[a + across] != GridSearch.WALL_COST;
+            if (open && runStart == NONE)
+                runStart = i;
+            if (open || runStart == NONE)
+                continue;
+
+            int runEnd = i - 1;
+            if (runEnd - runStart + 1 >= MAX_ENTRANCE) {
+                addTransition(first + runStart * along, across);
+                addTransition(first + runEnd * along, across);
+            } else
+                addTransition(first + (runStart + runEnd) / 2 * along, across);
+            runStart = NONE;
+        }
+    }
+
+    private void addTransition(int a, int across) {
+        int b = a + across;
+        int u = nodeOf[a] != NONE ? nodeOf[a] : addNode(a);
+        int v = nodeOf[b] != NONE ? nodeOf[b] : addNode(b);
+        addEdge(u, v, cost[b]);
+        addEdge(v, u, cost[a]);
+    }
+
+    private int addNode(int cell) {
+        if (nodeCount == nodeCell.length) {
+            int size = nodeCount * 2;
+            nodeCell = Arrays.copyOf(nodeCell, size);
+            edgeTo = Arrays.copyOf(edgeTo, size);
+            edgeCost = Arrays.copyOf(edgeCost, size);
+            edgeCount = Arrays.copyOf(edgeCount, size);
+        }
+        int u = nodeCount++;
+        nodeCell[u] = cell;
+        nodeOf[cell] = u;
+        edgeTo[u] = new int[4];
+        edgeCost[u] = new int[4];
+
+        int k = cluster(cell);
+        if (clusterNodeCount[k] == clusterNodes[k].length)
+            clusterNodes[k] = Arrays.copyOf(clusterNodes[k], clusterNodeCount[k] * 2);
+        clusterNodes[k][clusterNodeCount[k]++] = u;
+        return u;
+    }
+
+    private void addEdge(int u, int v, int c) {
+        if (edgeCount[u] == edgeTo[u].length) {
+            edgeTo[u] = Arrays.copyOf(edgeTo[u], edgeCount[u] * 2);
+            edgeCost[u] = Arrays.copyOf(edgeCost[u], edgeCount[u] * 2);
+        }
+        edgeTo[u][edgeCount[u]] = v;
+        edgeCost[u][edgeCount[u]++] = c;
+    }
+
+    // Binary heap of (priority, item) pairs packed into longs. Entries that became stale when an
+    // item got a better priority are skipped when they come out.
+    private static class Heap {
+        private long[] entries = new long[64];
+        private int size;
+
+        void clear() {
+            size = 0;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void push(int priority, int item) {
+            if (size == entries.length)
+                entries = Arrays.copyOf(entries, size * 2);
+            long e = ((long) priority << 32) | item;
+            int i = size++;
+            while (i > 0 && entries[(i - 1) / 2] > e) {
+                entries[i] = entries[(i - 1) / 2];
+                i = (i - 1) / 2;
+            }
+            entries[i] = e;
+        }
+
+        // Removes the entry with the lowest priority. The item is in the low 32 bits.
+        long pop() {
+            long top = entries[0];
+            long last = entries[--size];
+            int i = 0;
+            while (2 * i + 1 < size) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && entries[child + 1] < entries[child])
+                    ++child;
+                if (entries[child] >= last)
+                    break;
+                entries[i] = entries[child];
+                i = child;
+            }
+            entries[i] = last;
+            return top;
+        }
+    }
+
+    // Dijkstra's algorithm over the cells of one cluster
+    private class LocalSearch {
+        private final int[] distance = new int[CLUSTER_SIZE * CLUSTER_SIZE];
+        private final int[] parent = new int[CLUSTER_SIZE * CLUSTER_SIZE];
+        private final Heap heap = new Heap();
+        private int top, left, rows, cols;
+
+        // Searches from `start` until `target` is settled, or through the whole cluster if it is
+        // NONE
+        void run(int start, int target) {
+            top = start / width / CLUSTER_SIZE * CLUSTER_SIZE;
+            left = start % width / CLUSTER_SIZE * CLUSTER_SIZE;
+            rows = Math.min(CLUSTER_SIZE, height - top);
+            cols = Math.min(CLUSTER_SIZE, width - left);
+            Arrays.fill(distance, GridSearch.UNREACHED);
+            heap.clear();
+
+            int s = local(start);
+            distance[s] = 0;
+            parent[s] = NONE;
+            heap.push(0, s);
+            while (!heap.isEmpty()) {
+                long e = heap.pop();
+                int c = (int) e, d = (int) (e >>> 32);
+                if (d > distance[c])
+                    continue;
+                if (target != NONE && c == local(target))
+                    break;
+                int row = c / CLUSTER_SIZE, col = c % CLUSTER_SIZE;
+                if (row > 0)
+                    relax(c, c - CLUSTER_SIZE);
+                if (row < rows - 1)
+                    relax(c, c + CLUSTER_SIZE);
+                if (col > 0)
+                    relax(c, c - 1);
+                if (col < cols - 1)
+                    relax(c, c + 1);
+            }
+        }
+
+        // Distance of a cell of the cluster from the start of the last run
+        int distance(int cell) {
+            return distance[local(cell)];
+        }
+
+        // The cell before `cell` on the path from the start of the last run
+        int parent(int cell) {
+            int p = parent[local(cell)];
+            return (top + p / CLUSTER_SIZE) * width + left + p % CLUSTER_SIZE;
+        }
+
+        private void relax(int c, int n) {
+            int step = cost[(top + n / CLUSTER_SIZE) * width + left + n % CLUSTER_SIZE];
+            if (step == GridSearch.WALL_COST)
+                return;
+            int d = distance[c] + step;
+            if (d < distance[n]) {
+                distance[n] = d;
+                parent[n] = c;
+                heap.push(d, n);
+            }
+        }
+
+        private int local(int cell) {
+            return (cell / width - top) * CLUSTER_SIZE + cell % width - left;
+        }
+    }
+
+    // A* over the abstract graph, guided by the manhattan distance between the cells of the nodes
+    private class AbstractSearch {
+        final int[] distance = new int[nodeCount];
+        final int[] parent = new int[nodeCount];
+        private final Heap heap = new Heap();
+
+        // Searches from node `from` until node `target` is settled, or through the whole graph
+        // if it is NONE
+        void run(int from, int target) {
+            Arrays.fill(distance, GridSearch.UNREACHED);
+            distance[from] = 0;
+            parent[from] = NONE;
+            heap.push(heuristic(from, target), from);
+            while (!heap.isEmpty()) {
+                long e = heap.pop();
+                int u = (int) e;
+                if ((int) (e >>> 32) > distance[u] + heuristic(u, target))
+                    continue;
+                if (u == target)
+                    break;
+                for (int i = 0; i < edgeCount[u]; ++i) {
+                    int v = edgeTo[u][i], d = distance[u] + edgeCost[u][i];
+                    if (d < distance[v]) {
+                        distance[v] = d;
+                        parent[v] = u;
+                        heap.push(d + heuristic(v, target), v);
+                    }
+                }
+            }
+        }
+
+        private int heuristic(int u, int target) {
+            if (target == NONE)
+                return 0;
+            int a = nodeCell[u], b = nodeCell[target];
+            return Math.abs(a / width - b / width) + Math.abs(a % width - b % width);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import com.ibm.vie.mazerunner.IAnalysisBoard;
+import com.ibm.vie.mazerunner.Location;
+
+// Reusable shortest-path search over one board. Everything is kept in flat int arrays indexed by
+// `row * width + col`, so once the engine is made a search allocates nothing per expanded cell.
+//
+// Step costs are small integers, so the open set is a bucket ("Dial") queue: one bucket per
+// priority, kept in a ring a little longer than the largest step cost. Every cell is in at most one
+// bucket at a time (doubly linked through `next`/`before`), which makes decrease-key O(1).
+public class GridSearch {
+    // Distance of a cell the last search never reached
+    public static final int UNREACHED = Integer.MAX_VALUE;
+    // Parent of the start cell and of unreached cells
+    public static final int NO_PARENT = -1;
+    // Walls can be walked into, but we don't want them to be worth Integer.MAX_VALUE
+    public static final int WALL_COST = 1024;
+
+    private static final int NOT_QUEUED = -1;
+
+    public final int width, height;
+    // Cost of stepping onto each cell
+    public final int[] cost;
+    // Results of the last search
+    public final int[] distance;
+    public final int[] parent;
+    // Cells the last search expanded
+    public int expanded;
+
+    private final boolean[] settled;
+    private final int[] priority;
+    private final int[] next;
+    private final int[] before;
+    private final int[] head;
+    private final int[] tail;
+    private final boolean[] isTarget;
+    private int queued;
+    private int lowest;
+
+    public GridSearch(IAnalysisBoard board) {
+        width = board.getWidth();
+        height = board.getHeight();
+        int cells = width * height;
+
+        cost = new int[cells];
+        int maxCost = 1;
+        for (int row = 0; row < height; ++row)
+            for (int col = 0; col < width; ++col) {
+                int c = board.getSquareAt(new Location(row, col)).getStepCost();
+                if (c == Integer.MAX_VALUE)
+                    c = WALL_COST; // Prevent overflows
+                cost[row * width + col] = c;
+                maxCost = Math.max(maxCost, c);
+            }
+
+        distance = new int[cells];
+        parent = new int[cells];
+        settled = new boolean[cells];
+        priority = new int[cells];
+        next = new int[cells];
+        before = new int[cells];
+        isTarget = new boolean[cells];
+
+        // A* priorities can grow by one more than the step cost, since the heuristic may grow by one
+        head = new int[maxCost + 2];
+        tail = new int[maxCost + 2];
+    }
+
+    // Another engine for the same board, sharing the step costs, so searches can run on several
+    // threads at once
+    public GridSearch(GridSearch other) {
+        width = other.width;
+        height = other.height;
+        cost = other.cost;
+        int cells = cost.length;
+
+        distance = new int[cells];
+        parent = new int[cells];
+        settled = new boolean[cells];
+        priority = new int[cells];
+        next = new int[cells];
+        before = new int[cells];
+        isTarget = new boolean[cells];
+        head = new int[other.head.length];
+        tail = new int[other.tail.length];
+    }
+
+    public int index(Coordinate c) {
+        return c.y * width + c.x;
+    }
+
+    public Coordinate coordinate(int index) {
+        return new Coordinate(index % width, index / width);
+    }
+
+    // Dijkstra's algorithm from `start`. With targets, stops as soon as all of them are settled;
+    // with none, settles the whole board.
+    public void dijkstra(int start, int... targets) {
+        int remaining = 0;
+        for (int t : targets)
+            if (!isTarget[t]) {
+                isTarget[t] = true;
+                ++remaining;
+            }
+        boolean shortCircuit = remaining > 0;
+
+        reset(start, 0);
+        while (queued > 0) {
+            int c = poll();
+            settled[c] = true;
+            ++expanded;
+            if (isTarget[c]) {
+                isTarget[c] = false;
+                if (--remaining == 0 && shortCircuit)
+                    break;
+            }
+            relax(c, -1);
+        }
+
+        for (int t : targets)
+            isTarget[t] = false;
+    }
+
+    // A* from `start` to `target`, guided by the manhattan distance (every step costs at least 1)
+    public void astar(int start, int target) {
+        reset(start, heuristic(start, target));
+        while (queued > 0) {
+            int c = poll();
+            settled[c] = true;
+            if (c == target)
+                break;
+            ++expanded;
+            relax(c, target);
+        }
+    }
+
+    // Walks the parent links back from `dest` to the start of the last search
+    public ArrayList<Coordinate> path(int dest) {
+        return path(parent, dest);
+    }
+
+    // Same as path(dest), for parent links saved from an earlier search
+    public ArrayList<Coordinate> path(int[] parents, int dest) {
+        ArrayList<Coordinate> spath = new ArrayList<>();
+        for (int i = dest; i != NO_PARENT; i = parents[i])
+            spath.add(coordinate(i));
+        Collections.reverse(spath);
+        return spath;
+    }
+
+    private void reset(int start, int startPriority) {
+        Arrays.fill(distance, UNREACHED);
+        Arrays.fill(parent, NO_PARENT);
+        Arrays.fill(settled, false);
+        Arrays.fill(next, NOT_QUEUED);
+        Arrays.fill(before, NOT_QUEUED);
+        Arrays.fill(head, NOT_QUEUED);
+        Arrays.fill(tail, NOT_QUEUED);
+        queued = 0;
+        expanded = 0;
+
+        distance[start] = 0;
+        lowest = startPriority;
+        push(start, startPriority);
+    }
+
+    private void relax(int c, int target) {
+        int row = c / width, col = c - row * width;
+        if (row > 0)
+            relaxEdge(c, c - width, target);
+        if (row < height - 1)
+            relaxEdge(c, c + width, target);
+        if (col > 0)
+            relaxEdge(c, c - 1, target);
+        if (col < width - 1)
+            relaxEdge(c, c + 1, target);
+    }
+
+    private void relaxEdge(int c, int nbr, int target) {
+        if (settled[nbr])
+            return;
+        int newdist = distance[c] + cost[nbr];
+        if (newdist < distance[nbr]) {
+            if (distance[nbr] != UNREACHED)
+                unlink(nbr);
+            distance[nbr] = newdist;
+            parent[nbr] = c;
+            push(nbr, target < 0 ? newdist : newdist + heuristic(nbr, target));
+        }
+    }
+
+    private int heuristic(int a, int b) {
+        int ar = a / width, br = b / width;
+        return Math.abs(ar - br) + Math.abs((a - ar * width) - (b - br * width));
+    }
+
+    private void push(int c, int p) {
+        priority[c] = p;
+        int b = p % head.length;
+        before[c] = tail[b];
+        next[c] = NOT_QUEUED;
+        if (tail[b] == NOT_QUEUED)
+            head[b] = c;
+        else
+            next[tail[b]] = c;
+        tail[b] = c;
+        ++queued;
+    }
+
+    private void unlink(int c) {
+        int b = priority[c] % head.length;
+        if (before[c] == NOT_QUEUED)
+            head[b] = next[c];
+        else
+            next[before[c]] = next[c];
+        if (next[c] == NOT_QUEUED)
+            tail[b] = before[c];
+        else
+            before[next[c]] = before[c];
+        --queued;
+    }
+
+    private int poll() {
+        while (head[lowest % head.length] == NOT_QUEUED)
+            ++lowest;
+        int c = head[lowest % head.length];
+        unlink(c);
+        return c;
+    }
+}
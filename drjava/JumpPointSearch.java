@@ -0,0 +1,285 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+// Point-to-point search that jumps across the plain cells of a board (Jump Point Search for
+// 4-connected grids, with the jumps worked out ahead of time as in JPS+). On open ground there are
+// many equally short paths between two cells, and A* expands the cells of all of them. This search
+// only stops where a path may have to turn: at an obstacle corner, next to a costlier cell, or in
+// line with the target.
+//
+// Only cells with the cheapest step cost (1) are jumped over. Costlier cells (mud, bushes, lava,
+// ...) are expanded one step at a time like in Dijkstra's algorithm, so the paths cost the same as
+// GridSearch's. Walls are never entered: stepping on one uses up every step anyway.
+//
+// Between turning points the paths go vertically first and then horizontally:
+// - moving horizontally, a jump stops where a cell above or below opens up after an obstacle
+// - moving vertically, a jump stops wherever a horizontal jump from it would stop
+public class JumpPointSearch {
+    // Step cost of the cells that are jumped over
+    public static final int PLAIN_COST = 1;
+
+    private static final int NONE = -1;
+    // Directions, as indexes into DROW/DCOL
+    private static final int NORTH = 0, SOUTH = 1, WEST = 2, EAST = 3;
+    private static final int[] DROW = { -1, 1, 0, 0 };
+    private static final int[] DCOL = { 0, 0, -1, 1 };
+
+    public final int width, height;
+    // Cost of stepping onto each cell, shared with a GridSearch
+    public final int[] cost;
+    // Results of the last search. Only jump points and costlier cells are reached, and parent
+    // links skip over the plain cells between them.
+    public final int[] distance;
+    public final int[] parent;
+    // Cells the last search expanded
+    public int expanded;
+
+    // jumps[d][c] is how many steps in direction d from c the next jump point is. When the plain
+    // cells end before one, it is minus the number of plain cells there are in that direction.
+    private final int[][] jumps;
+
+    private final boolean[] closed;
+    // Direction each cell was reached in, or NONE for the start
+    private final int[] direction;
+
+    // Binary heap of open cells, by distance plus heuristic
+    private final int[] heap;
+    private final int[] heapIndex;
+    private final int[] priority;
+    private int heapSize;
+
+    private int target;
+
+    // A search for the board GridSearch was made for, sharing its step costs. Works out the jumps
+    // from every cell, which takes a few passes over the board.
+    public JumpPointSearch(GridSearch grid) {
+        width = grid.width;
+        height = grid.height;
+        cost = grid.cost;
+        int cells = cost.length;
+
+        distance = new int[cells];
+        parent = new int[cells];
+        closed = new boolean[cells];
+        direction = new int[cells];
+        heap = new int[cells];
+        heapIndex = new int[cells];
+        priority = new int[cells];
+
+        jumps = new int[4][cells];
+        // Vertical jump points depend on the horizontal jumps, so those go first
+        for (int row = 0; row < height; ++row) {
+            for (int col = width - 1; col >= 0; --col)
+                jumps[EAST][row * width + col] = precompute(row, col, EAST);
+            for (int col = 0; col < width; ++col)
+                jumps[WEST][row * width + col] = precompute(row, col, WEST);
+        }
+        for (int col = 0; col < width; ++col) {
+            for (int row = height - 1; row >= 0; --row)
+                jumps[SOUTH][row * width + col] = precompute(row, col, SOUTH);
+            for (int row = 0; row < height; ++row)
+                jumps[NORTH][row * width + col] = precompute(row, col, NORTH);
+        }
+    }
+
+    // Finds the cheapest path from `start` to `target`, leaving its cost in distance[target]. The
+    // target stays UNREACHED if it can only be reached through walls.
+    public void search(int start, int target) {
+        this.target = target;
+        Arrays.fill(distance, GridSearch.UNREACHED);
+        Arrays.fill(parent, GridSearch.NO_PARENT);
+        Arrays.fill(closed, false);
+        Arrays.fill(heapIndex, NONE);
+        heapSize = 0;
+        expanded = 0;
+
+        distance[start] = 0;
+        direction[start] = NONE;
+        push(start, heuristic(start));
+        while (heapSize > 0) {
+            int c = pop();
+            if (c == target)
+                break;
+            closed[c] = true;
+            ++expanded;
+            successors(c);
+        }
+    }
+
+    // The path to `dest` found by the last search, filling in the cells jumped over. Empty if the
+    // search did not reach it.
+    public ArrayList<Coordinate> path(int dest) {
+        ArrayList<Coordinate> spath = new ArrayList<>();
+        if (distance[dest] == GridSearch.UNREACHED)
+            return spath;
+        for (int i = dest; i != GridSearch.NO_PARENT; i = parent[i]) {
+            spath.add(new Coordinate(i % width, i / width));
+            int p = parent[i];
+            if (p == GridSearch.NO_PARENT)
+                break;
+            // A cell is always on the same row or column as its parent
+            int step = (p / width == i / width) ? Integer.signum(p - i) : Integer.signum(p - i) * width;
+            for (int j = i + step; j != p; j += step)
+                spath.add(new Coordinate(j % width, j / width));
+        }
+        Collections.reverse(spath);
+        return spath;
+    }
+
+    // jumps[d] for (row, col), given jumps[d] for the cell after it
+    private int precompute(int row, int col, int d) {
+        int r = row + DROW[d], k = col + DCOL[d];
+        if (!plain(r, k))
+            return 0;
+        if (isJumpPoint(r, k, d))
+            return 1;
+        int further = jumps[d][r * width + k];
+        return further > 0 ? further + 1 : further - 1;
+    }
+
+    // Whether a jump in direction `d` stops on the plain cell (row, col), wherever the target is
+    private boolean isJumpPoint(int row, int col, int d) {
+        if (nextToCostlier(row, col))
+            return true;
+        int dr = DROW[d], dc = DCOL[d];
+        if (dr == 0) {
+            // A cell above or below that the cell behind could not step to
+            return (plain(row - 1, col) && !plain(row - 1, col - dc))
+                    || (plain(row + 1, col) && !plain(row + 1, col - dc));
+        }
+        int c = row * width + col;
+        return (plain(row, col - 1) && !plain(row - dr, col - 1))
+                || (plain(row, col + 1) && !plain(row - dr, col + 1))
+                || jumps[WEST][c] > 0 || jumps[EAST][c] > 0;
+    }
+
+    private void successors(int c) {
+        int row = c / width, col = c - row * width;
+        int from = direction[c];
+        int targetRow = target / width, targetCol = target - targetRow * width;
+        for (int d = 0; d < 4; ++d) {
+            // Going straight back is never shorter than where we came from
+            if (from != NONE && d == opposite(from))
+                continue;
+            int r = row + DROW[d], k = col + DCOL[d];
+            if (r < 0 || r >= height || k < 0 || k >= width || cost[r * width + k] == GridSearch.WALL_COST)
+                continue;
+            if (cost[r * width + k] != PLAIN_COST) {
+                relax(c, r * width + k, distance[c] + cost[r * width + k], d);
+                continue;
+            }
+
+            int jump = jumps[d][c], reach = Math.abs(jump);
+            // Steps in direction d to the target's row or column, if it is ahead
+            int ahead = DROW[d] != 0 ? (targetRow - row) * DROW[d] : (targetCol - col) * DCOL[d];
+            if (ahead > 0 && ahead <= reach) {
+                int stop = c + ahead * (DROW[d] * width + DCOL[d]);
+                if (stop == target) {
+                    relax(c, stop, distance[c] + ahead, d);
+                    continue;
+                }
+                // A vertical jump also stops level with the target, if it can be walked to
+                int side = targetCol < col ? WEST : EAST;
+                if (DROW[d] != 0 && Math.abs(targetCol - col) <= Math.abs(jumps[side][stop])) {
+                    relax(c, stop, distance[c] + ahead, d);
+                    continue;
+                }
+            }
+            if (jump > 0)
+                relax(c, c + jump * (DROW[d] * width + DCOL[d]), distance[c] + jump, d);
+        }
+    }
+
+    private void relax(int from, int c, int newdist, int d) {
+        if (closed[c] || newdist >= distance[c])
+            return;
+        distance[c] = newdist;
+        parent[c] = from;
+        direction[c] = d;
+        int p = newdist + heuristic(c);
+        if (heapIndex[c] == NONE)
+            push(c, p);
+        else {
+            priority[c] = p;
+            siftUp(heapIndex[c]);
+        }
+    }
+
+    private boolean plain(int row, int col) {
+        return row >= 0 && row < height && col >= 0 && col < width
+                && cost[row * width + col] == PLAIN_COST;
+    }
+
+    // Whether a costlier cell (not a wall) is next to this one; a path may turn into it here
+    private boolean nextToCostlier(int row, int col) {
+        int c = row * width + col;
+        return (row > 0 && costlier(c - width))
+                || (row < height - 1 && costlier(c + width))
+                || (col > 0 && costlier(c - 1))
+                || (col < width - 1 && costlier(c + 1));
+    }
+
+    private boolean costlier(int c) {
+        return cost[c] != PLAIN_COST && cost[c] != GridSearch.WALL_COST;
+    }
+
+    private static int opposite(int d) {
+        return d ^ 1;
+    }
+
+    // Every step costs at least 1
+    private int heuristic(int c) {
+        return Math.abs(c / width - target / width) + Math.abs(c % width - target % width);
+    }
+
+    private void push(int c, int p) {
+        priority[c] = p;
+        heap[heapSize] = c;
+        heapIndex[c] = heapSize;
+        siftUp(heapSize++);
+    }
+
+    private int pop() {
+        int top = heap[0];
+        heapIndex[top] = NONE;
+        if (--heapSize > 0) {
+            heap[0] = heap[heapSize];
+            heapIndex[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    private void siftUp(int i) {
+        int c = heap[i];
+        while (i > 0) {
+            int up = (i - 1) / 2;
+            if (priority[heap[up]] <= priority[c])
+                break;
+            heap[i] = heap[up];
+            heapIndex[heap[i]] = i;
+            i = up;
+        }
+        heap[i] = c;
+        heapIndex[c] = i;
+    }
+
+    private void siftDown(int i) {
+        int c = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize)
+                break;
+            if (child + 1 < heapSize && priority[heap[child + 1]] < priority[heap[child]])
+                ++child;
+            if (priority[heap[child]] >= priority[c])
+                break;
+            heap[i] = heap[child];
+            heapIndex[heap[i]] = i;
+            i = child;
+        }
+        heap[i] = c;
+        heapIndex[c] = i;
+    }
+}
@@ -1,4 +1,5 @@
 import java.util.*;
+import java.util.stream.IntStream;
 
 import com.ibm.vie.mazerunner.IAnalysisBoard;
 import com.ibm.vie.mazerunner.squares.Treasure;
@@ -7,6 +8,8 @@ public class Pathfinding {
     // Structure for storing a coordinate along with its priority for Dijkstra
     // Also includes a comparator so the PriorityQueue uses its "natural ordering"
     // without the need for a comparator.
+    // No longer used: the searches run on GridSearch. Kept for code written against it.
+    @Deprecated
     public static class CoordinateInfo implements Comparable<CoordinateInfo> {
         public Coordinate c;
         public int priority;
@@ -34,63 +37,19 @@ public class Pathfinding {
             new Coordinate(0, 1),
     };
 
-    // Implementation of Dijkstra's algorithm for weighted shortest-path
+    // Implementation of Dijkstra's algorithm for weighted shortest-path.
+    // Runs on a GridSearch and copies its results into the maps; code that searches
+    // often should keep a GridSearch and read its arrays instead.
     public static void dijkstra(IAnalysisBoard board, Coordinate start,
             HashMap<Coordinate, Integer> distance, HashMap<Coordinate, Coordinate> prev, boolean shortCircuit,
             Coordinate[] targets) {
-        PriorityQueue<CoordinateInfo> Q = new PriorityQueue<>();
-        HashSet<Coordinate> visited = new HashSet<>();
+        GridSearch search = new GridSearch(board);
+        int[] tgts = new int[shortCircuit ? targets.length : 0];
+        for (int i = 0; i < tgts.length; ++i)
+            tgts[i] = search.index(targets[i]);
 
-        int width = board.getWidth(), height = board.getHeight();
-
-        for (int x = 0; x < width; ++x)
-            for (int y = 0; y < height; ++y) {
-                Coordinate c = new Coordinate(x, y);
-                distance.put(c, Integer.MAX_VALUE);
-                prev.put(c, null);
-                Q.add(new CoordinateInfo(c, c.equals(start) ? 0 : Integer.MAX_VALUE));
-            }
-
-        distance.put(start, 0);
-
-        ArrayList<Coordinate> tgts = new ArrayList<>();
-        for (Coordinate t : targets)
-            tgts.add(t);
-
-        while (Q.size() > 0) {
-            Coordinate c = Q.remove().c;
-            if (shortCircuit && tgts.size() == 0)
-                break;
-
-            tgts.remove(c);
-
-            if (visited.contains(c))
-                continue;
-            visited.add(c);
-
-            for (Coordinate o : offsets) {
-                // Tile in bounds
-                Coordinate nbr = c.add(o);
-                // System.out.println(nbr);
-                if (nbr.x >= 0 && nbr.y >= 0 && nbr.x < width && nbr.y < height) {
-                    int cost = board.getSquareAt(nbr.location()).getStepCost();
-                    if (cost == Integer.MAX_VALUE)
-                        cost = 1024; // Prevent overflows
-
-                    int newdist = distance.get(c) + cost;
-                    if (newdist < distance.get(nbr)) {
-                        distance.put(nbr, newdist);
-                        prev.put(nbr, c);
-                        Q.add(new CoordinateInfo(nbr, newdist));
-                    }
-                }
-            }
-        }
-    }
-
-    // Heuristic distance function for A*;
-    private static int heuristic(Coordinate a, Coordinate b) {
-        return a.manhattanDistance(b);
+        search.dijkstra(search.index(start), tgts);
+        copyResults(search, distance, prev);
     }
 
     // Improved version of Dijkstra's algorithm using a heuristic distance function
@@ -99,51 +58,17 @@ public class Pathfinding {
     // target
     public static void Astar(IAnalysisBoard board, Coordinate start,
             HashMap<Coordinate, Integer> distance, HashMap<Coordinate, Coordinate> prev, Coordinate target) {
+        GridSearch search = new GridSearch(board);
+        search.astar(search.index(start), search.index(target));
+        copyResults(search, distance, prev);
+    }
 
-        PriorityQueue<CoordinateInfo> Q = new PriorityQueue<>();
-        HashSet<Coordinate> visited = new HashSet<>();
-
-        int width = board.getWidth(), height = board.getHeight();
-
-        for (int x = 0; x < width; ++x)
-            for (int y = 0; y < height; ++y) {
-                Coordinate c = new Coordinate(x, y);
-                distance.put(c, Integer.MAX_VALUE);
-                prev.put(c, null);
-            }
-
-        // Make sure the starting square is evaulated first.
-        Q.add(new CoordinateInfo(start, 0));
-        distance.put(start, 0);
-
-        while (Q.size() > 0) {
-            Coordinate c = Q.remove().c;
-            if (c.equals(target))
-                break;
-
-            if (visited.contains(c))
-                continue;
-            visited.add(c);
-
-            for (Coordinate o : offsets) {
-                // Tile in bounds
-                Coordinate nbr = c.add(o);
-                // System.out.println(nbr);
-                if (nbr.x >= 0 && nbr.y >= 0 && nbr.x < width && nbr.y < height) {
-                    int cost = board.getSquareAt(nbr.location()).getStepCost();
-                    if (cost == Integer.MAX_VALUE)
-                        cost = 1024; // Prevent overflows
-
-                    int newdist = distance.get(c) + cost;
-                    if (newdist < distance.get(nbr)) {
-                        distance.put(nbr, newdist);
-                        prev.put(nbr, c);
-                        // Prioritize the "candidate" neighbors based on distance heuristic to the
-                        // target.
-                        Q.add(new CoordinateInfo(nbr, newdist + heuristic(nbr, target)));
-                    }
-                }
-            }
+    private static void copyResults(GridSearch search, HashMap<Coordinate, Integer> distance,
+            HashMap<Coordinate, Coordinate> prev) {
+        for (int i = 0; i < search.distance.length; ++i) {
+            Coordinate c = search.coordinate(i);
+            distance.put(c, search.distance[i]);
+            prev.put(c, search.parent[i] == GridSearch.NO_PARENT ? null : search.coordinate(search.parent[i]));
         }
     }
 
@@ -166,10 +91,32 @@ public class Pathfinding {
 
     // Wrapper function for simple point-to-point pathfinding.
     public static ArrayList<Coordinate> shortestPath(IAnalysisBoard board, Coordinate start, Coordinate destination) {
-        HashMap<Coordinate, Coordinate> prev = new HashMap<>();
-        HashMap<Coordinate, Integer> distance = new HashMap<>();
-        Astar(board, start, distance, prev, destination);
-        return pathFromPrev(destination, prev);
+        GridSearch search = new GridSearch(board);
+        return shortestPath(new JumpPointSearch(search), search, start, destination);
+    }
+
+    // Point-to-point pathfinding with jump point search, which expands far fewer cells
+    // than A* on open ground. A* takes over if the destination is walled in.
+    public static ArrayList<Coordinate> shortestPath(JumpPointSearch jps, GridSearch search, Coordinate start,
+            Coordinate destination) {
+        jps.search(search.index(start), search.index(destination));
+        ArrayList<Coordinate> path = jps.path(search.index(destination));
+        return path.isEmpty() ? shortestPath(search, start, destination) : path;
+    }
+
+    // Point-to-point pathfinding on the abstract graph of a very large board. The
+    // path can cost a little more than the flat searches' (see ClusterGraph).
+    public static ArrayList<Coordinate> shortestPath(ClusterGraph graph, GridSearch search, Coordinate start,
+            Coordinate destination) {
+        ArrayList<Coordinate> path = graph.path(graph.insert(search.index(start)),
+                graph.insert(search.index(destination)));
+        return path.isEmpty() ? shortestPath(search, start, destination) : path;
+    }
+
+    // Point-to-point pathfinding reusing a search engine made for the board
+    public static ArrayList<Coordinate> shortestPath(GridSearch search, Coordinate start, Coordinate destination) {
+        search.astar(search.index(start), search.index(destination));
+        return search.path(search.index(destination));
     }
 
     // Base class for "treasure distance comparators" which basically sort treasures
@@ -213,58 +160,117 @@ public class Pathfinding {
     // More accurate selector using actual distance, with the added advantage of
     // being able to cache paths for later use.
     public static class ActualCostSelector extends TreasureDistanceComparator {
+        // The treasures, then the starting location. A coordinate's position in this
+        // array is its ordinal in the tables below.
+        public Coordinate[] nodes;
+        public HashMap<Coordinate, Integer> ordinals;
         // Table of "actual" (including pathfinding-avoided obstacles) distances between
-        // treasure coordinates. Used for caching path segments that can be used when
-        // generating the full path
-        public HashMap<List<Coordinate>, Integer> edgeDistanceMesh;
-        // Path caching
-        public HashMap<List<Coordinate>, ArrayList<Coordinate>> actualEdges;
+        // the nodes, by ordinal
+        public int[][] distances;
+        // Path caching: the parent links of the search from each node. Node i's search
+        // only covers the nodes from i on, the rest are read backwards from theirs.
+        public int[][] parents;
+        // The cost of stepping onto each node
+        public int[] stepCosts;
+        private GridSearch search;
+        // On very large boards the distances come from a ClusterGraph instead, and
+        // paths are refined from it when asked for. graphNodes are the nodes' ids in it.
+        // The pairs it cannot connect are searched on the flat grid, both ways.
+        private ClusterGraph graph;
+        private int[] graphNodes;
 
         @Override
         public void init(IAnalysisBoard board) {
-            this.edgeDistanceMesh = new HashMap<>();
-            this.actualEdges = new HashMap<>();
-
             // Which coordinates are we measuring to/from
-            ArrayList<Coordinate> measurements = new ArrayList<>();
-            for (Treasure t : board.getTreasures())
-                measurements.add(new Coordinate(t.getLocation()));
-            measurements.add(new Coordinate(board.getStartingLocation()));
-
-            // Coordinates that haven't been mapped to every other coordinate yet
-            ArrayList<Coordinate> targetsRemaining = new ArrayList<>();
-            for (Coordinate c : measurements)
-                targetsRemaining.add(c);
-
-            for (Coordinate c : measurements) {
-                HashMap<Coordinate, Coordinate> prev = new HashMap<>();
-                HashMap<Coordinate, Integer> distance = new HashMap<>();
-                dijkstra(board, c, distance, prev, true, targetsRemaining.toArray(new Coordinate[0]));
-                for (Coordinate tgt : targetsRemaining) {
-                    edgeDistanceMesh.put(Arrays.asList(c, tgt), distance.get(tgt));
-                    actualEdges.put(Arrays.asList(c, tgt), pathFromPrev(tgt, prev));
-                }
+            List<Treasure> treasures = board.getTreasures();
+            int n = treasures.size() + 1;
+            nodes = new Coordinate[n];
+            for (int i = 0; i < n - 1; ++i)
+                nodes[i] = new Coordinate(treasures.get(i).getLocation());
+            nodes[n - 1] = new Coordinate(board.getStartingLocation());
+
+            ordinals = new HashMap<>();
+            for (int i = 0; i < n; ++i)
+                ordinals.putIfAbsent(nodes[i], i);
+
+            search = new GridSearch(board);
+            int[] cells = new int[n];
+            stepCosts = new int[n];
+            for (int i = 0; i < n; ++i) {
+                cells[i] = search.index(nodes[i]);
+                stepCosts[i] = search.cost[cells[i]];
+            }
 
-                targetsRemaining.remove(c);
+            distances = new int[n][n];
+            if (search.cost.length >= ClusterGraph.MIN_CELLS) {
+                initHierarchical(cells);
+                return;
             }
+
+            // One multi-target search per node, to itself and every node after it, spread
+            // over the fork-join pool. Each worker thread gets its own search arrays.
+            parents = new int[n][];
+            ThreadLocal<GridSearch> searches = ThreadLocal.withInitial(() -> new GridSearch(search));
+            IntStream.range(0, n).parallel().forEach(i -> {
+                GridSearch s = searches.get();
+                s.dijkstra(cells[i], Arrays.copyOfRange(cells, i, n));
+                for (int j = i; j < n; ++j) {
+                    distances[i][j] = s.distance[cells[j]];
+                    distances[j][i] = s.distance[cells[j]];
+                }
+                parents[i] = s.parent.clone();
+            });
+        }
+
+        // Fills in the distances from a ClusterGraph of the board, which saves keeping
+        // a board-sized parents array per node. The graph has no walls, so a node that
+        // can only be reached through them is measured with a search from each node
+        // that misses it instead, which only keeps its distances.
+        private void initHierarchical(int[] cells) {
+            int n = cells.length;
+            ClusterGraph g = new ClusterGraph(search);
+            int[] ids = new int[n];
+            for (int i = 0; i < n; ++i)
+                ids[i] = g.insert(cells[i]);
+
+            ThreadLocal<GridSearch> searches = ThreadLocal.withInitial(() -> new GridSearch(search));
+            IntStream.range(0, n).parallel().forEach(i -> {
+                int[] row = g.distances(ids[i], ids);
+                int[] unreached = IntStream.range(0, n).filter(j -> row[j] == GridSearch.UNREACHED)
+                        .map(j -> cells[j]).toArray();
+                if (unreached.length > 0) {
+                    GridSearch s = searches.get();
+                    s.dijkstra(cells[i], unreached);
+                    for (int j = 0; j < n; ++j)
+                        if (row[j] == GridSearch.UNREACHED)
+                            row[j] = s.distance[cells[j]];
+                }
+                distances[i] = row;
+            });
+            graph = g;
+            graphNodes = ids;
         }
 
         public int getDistance(Coordinate a, Coordinate b) {
-            return edgeDistanceMesh.containsKey(Arrays.asList(b, a)) ? edgeDistanceMesh.get(Arrays.asList(b, a))
-                    : (edgeDistanceMesh.containsKey(Arrays.asList(a, b)) ? edgeDistanceMesh.get(Arrays.asList(a, b))
-                            : -1);
+            Integer i = ordinals.get(a), j = ordinals.get(b);
+            return (i != null && j != null) ? distances[i][j] : -1;
         }
 
         public ArrayList<Coordinate> getEdgePath(Coordinate src, Coordinate dest) {
-            ArrayList<Coordinate> ep = actualEdges.containsKey(Arrays.asList(dest, src))
-                    ? actualEdges.get(Arrays.asList(dest, src))
-                    : (actualEdges.containsKey(Arrays.asList(src, dest)) ? actualEdges.get(
-                            Arrays.asList(src, dest)) : null);
-
-            // The path needs to be reversed if it was entered into the cache backwards
-            // (which is done to remove "duplicates")
-            if (actualEdges.containsKey(Arrays.asList(dest, src)))
-                Collections.reverse(ep);
+            Integer i = ordinals.get(src), j = ordinals.get(dest);
+            if (i == null || j == null)
+                return null;
+
+            if (graph != null) {
+                ArrayList<Coordinate> path = graph.path(graphNodes[i], graphNodes[j]);
+                return path.isEmpty() ? shortestPath(search, src, dest) : path;
+            }
+            if (i <= j)
+                return search.path(parents[i], search.index(dest));
+
+            // Only the search from dest reached src, so walk its path backwards
+            ArrayList<Coordinate> ep = search.path(parents[j], search.index(src));
+            Collections.reverse(ep);
             return ep;
         }
 
@@ -308,6 +314,11 @@ public class Pathfinding {
         return acc;
     }
 
+    // Returns a copy of `tour` with the stretch between i + 1 and j reversed, the
+    // 2-opt move. Note that it reverses that stretch of `tour` itself too.
+    // No longer used: optimizeTreasureOrdering runs TourImprover. Kept for code
+    // written against it.
+    @Deprecated
     public static ArrayList<Coordinate> swapEdge(ArrayList<Coordinate> tour, int i, int j) {
         ArrayList<Coordinate> cds = new ArrayList<>();
         cds.addAll(tour.subList(0, i + 1));
@@ -321,56 +332,146 @@ public class Pathfinding {
         return cds;
     }
 
-    // Runs iterative 2-opt TSP path optimization on the treasure ordering which is
-    // slow-ish but sometimes can squeeze out a few (not very many) more points!
+    // Runs 2-opt and Or-opt local search (TourImprover) on the treasure ordering,
+    // starting from the starting location. Takes milliseconds even with hundreds of
+    // treasures, and sometimes can squeeze out a few more points!
     public static ArrayList<Coordinate> optimizeTreasureOrdering(ArrayList<Coordinate> approximate,
             ActualCostSelector distances) {
-        ArrayList<Coordinate> path = approximate;
-
-        int current = 0, newOptimized = calculatePathCostFromNodes(path, distances);
-        while (current != newOptimized) {
-            for (int i = 0; i < approximate.size() - 2; ++i) {
-                for (int j = i + 2; j < approximate.size() - 1; ++j) {
-                    if (distances.getDistance(path.get(i), path.get(i + 1)) +
-                            distances.getDistance(path.get(j), path.get(j + 1)) > distances.getDistance(path.get(i),
-                                    path.get(j)) +
-                                    distances.getDistance(path.get(j + 1), path.get(i + 1))) {
-                        swapEdge(path, i, j);
-                        break;
-                    }
-                }
-            }
-            current = newOptimized;
-            newOptimized = calculatePathCostFromNodes(path, distances);
-        }
-
+        int[] order = new int[approximate.size()];
+        for (int i = 0; i < order.length; ++i)
+            order[i] = distances.ordinals.get(approximate.get(i));
+
+        order = new TourImprover(distances.distances, order).improve();
+        ArrayList<Coordinate> path = new ArrayList<>();
+        for (int t : order)
+            path.add(distances.nodes[t]);
         return path;
     }
 
+    // Improves on a treasure ordering with TourSolver: exact for few treasures, and
+    // branch and bound until `deadline` (System.nanoTime()) for more. The tour is an
+    // open path from the start, since the game ends on the last treasure.
+    // If `maxSteps` is not enough to collect every treasure, the ordering starts with
+    // as many treasures as PrizeCollector can fit instead.
+    public static ArrayList<Coordinate> solveTreasureOrdering(ArrayList<Coordinate> approximate,
+            ActualCostSelector distances, int maxSteps, long deadline) {
+        int[] initial = new int[approximate.size()];
+        for (int i = 0; i < initial.length; ++i)
+            initial[i] = distances.ordinals.get(approximate.get(i));
+
+        TourSolver solver = new TourSolver(distances.distances, deadline);
+        int[] order = solver.solve(initial);
+        order = new PrizeCollector(distances.distances, distances.stepCosts, maxSteps).plan(solver, order);
+        ArrayList<Coordinate> tour = new ArrayList<>();
+        for (int t : order)
+            tour.add(distances.nodes[t]);
+        return tour;
+    }
+
     // Concatenates the paths between a array of treasures, in traversal order,
     // calculated by `getSortedTreasures` (Nearest-Neighbor ) fed through
-    // `optimizeTreasureOrdering` (2-opt local path optimization)
+    // `optimizeTreasureOrdering` (2-opt local path optimization) and then
+    // `solveTreasureOrdering` (exact or branch and bound, within the time budget)
     public static StrategyRecord generateTreasureTraversal(IAnalysisBoard board) {
+        long deadline = System.nanoTime() + TourSolver.TIME_BUDGET_MILLIS * 1_000_000L;
         StrategyRecord sr = new StrategyRecord();
         ActualCostSelector cs = new ActualCostSelector();
         cs.init(board);
 
-        ArrayDeque<Coordinate> treasures = new ArrayDeque<>();
-        // treasures.addAll(getSortedTreasures(board, cs));
-        treasures.addAll(optimizeTreasureOrdering(getSortedTreasures(board, cs),
-                cs));
+        ArrayList<Coordinate> treasures = solveTreasureOrdering(optimizeTreasureOrdering(
+                getSortedTreasures(board, cs), cs), cs, board.getRemainingSteps(), deadline);
+        // treasures = getSortedTreasures(board, cs);
 
-        Coordinate current = new Coordinate(board.getStartingLocation());
-        while (treasures.size() > 0) {
-            Coordinate next = treasures.removeFirst();
+        sr.path.addAll(walkTour(treasures, cs, board.getRemainingSteps()));
+        sr.generateMoves();
+        return sr;
+    }
 
-            sr.path.addAll(cs.getEdgePath(current, next));
+    // Concatenates the paths between the treasures of a tour. Stepping on a treasure
+    // collects it (Treasure.moveTo), so a treasure that an earlier path walks over is
+    // dropped from the rest of the tour, and the rest is shortened again with
+    // TourImprover from where that path ended. The walk stops once every treasure is
+    // collected, since that ends the game.
+    public static ArrayList<Coordinate> walkTour(ArrayList<Coordinate> tour, ActualCostSelector cs,
+            int maxSteps) {
+        int start = cs.nodes.length - 1;
+        ArrayList<Integer> remaining = new ArrayList<>();
+        for (Coordinate c : tour)
+            remaining.add(cs.ordinals.get(c));
+        boolean[] collected = new boolean[start];
+
+        ArrayList<Coordinate> path = new ArrayList<>();
+        int at = start, steps = 0;
+        while (remaining.size() > 0) {
+            int next = remaining.remove(0);
+            ArrayList<Coordinate> leg = cs.getEdgePath(cs.nodes[at], cs.nodes[next]);
+            steps += cs.distances[at][next];
+            at = next;
+
+            // Treasures not collected yet, counting `next`
+            int left = remaining.size() + 1;
+            boolean crossed = false;
+            for (int i = 0; i < leg.size(); ++i) {
+                Integer t = cs.ordinals.get(leg.get(i));
+                if (t == null || t == start || collected[t])
+                    continue;
+                collected[t] = true;
+                crossed |= t != next;
+                if (--left == 0) {
+                    // That was the last one, the game is over
+                    path.addAll(leg.subList(0, i + 1));
+                    return path;
+                }
+            }
+            path.addAll(leg);
+
+            if (crossed) {
+                remaining.removeIf(t -> collected[t]);
+                // Reordering is only safe while the rest of the tour fits in the steps;
+                // otherwise PrizeCollector chose the order and dropping is all we do
+                if (steps + tourCost(cs.distances, at, remaining) <= maxSteps)
+                    reoptimize(cs.distances, at, remaining);
+            }
+        }
+        return path;
+    }
 
-            current = next;
+    // Distance of visiting `order` from node `at`
+    private static int tourCost(int[][] dist, int at, List<Integer> order) {
+        int acc = 0;
+        for (int t : order) {
+            acc += dist[at][t];
+            at = t;
         }
+        return acc;
+    }
 
-        sr.generateMoves();
-        return sr;
+    // Reorders `order` in place with TourImprover, as a tour starting on node `at`
+    private static void reoptimize(int[][] dist, int at, ArrayList<Integer> order) {
+        int n = order.size();
+        if (n < 2)
+            return;
+
+        // Distances between the remaining treasures, with `at` as the start
+        int[] nodes = new int[n + 1];
+        for (int i = 0; i < n; ++i)
+            nodes[i] = order.get(i);
+        nodes[n] = at;
+        int[][] sub = new int[n + 1][n + 1];
+        for (int i = 0; i <= n; ++i)
+            for (int j = 0; j <= n; ++j)
+                sub[i][j] = dist[nodes[i]][nodes[j]];
+
+        int[] identity = new int[n];
+        for (int i = 0; i < n; ++i)
+            identity[i] = i;
+        // The tour was good already, so a few kicks are enough to repair it
+        TourImprover improver = new TourImprover(sub, identity);
+        int[] improved = improver.improve(TourImprover.KICKS / 10);
+        if (improver.cost() >= tourCost(dist, at, order))
+            return;
+        for (int i = 0; i < n; ++i)
+            order.set(i, nodes[improved[i]]);
     }
 
     // The simplest and stupidest strategy to the traveling-salesman problem that
@@ -386,6 +487,12 @@ public class Pathfinding {
 
         // Let the comparator see the board
         cmp.init(board);
+        GridSearch search = new GridSearch(board);
+        JumpPointSearch jps = new JumpPointSearch(search);
+        // Very large boards get an abstract graph, built once for all of the paths
+        ClusterGraph graph = null;
+        if (!(cmp instanceof ActualCostSelector) && search.cost.length >= ClusterGraph.MIN_CELLS)
+            graph = new ClusterGraph(search);
 
         // Go through all of the treasures
         while (treasures.size() > 0) {
@@ -402,8 +509,10 @@ public class Pathfinding {
             if (cmp instanceof ActualCostSelector)
                 travel = ((ActualCostSelector) cmp)
                         .getEdgePath(position, new Coordinate(target.getLocation()));
+            else if (graph != null)
+                travel = shortestPath(graph, search, position, new Coordinate(target.getLocation()));
             else // Otherwise we just calculate it on-the-fly
-                travel = shortestPath(board, position, new Coordinate(target.getLocation()));
+                travel = shortestPath(jps, search, position, new Coordinate(target.getLocation()));
 
             strat.path.addAll(travel);
 
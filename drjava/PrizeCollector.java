@@ -0,0 +1,198 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// Chooses which treasures to go for when there are not enough steps to collect them
+// all. The score is then 100 points per treasure, whatever the steps, so this is the
+// orienteering problem: visit as many treasures as possible on a path of limited
+// length from the start.
+//
+// The game lets the player make a move as long as it has steps left, so a treasure
+// counts if the steps taken before stepping onto it are less than the maximum.
+public class PrizeCollector {
+    // On top of TourSolver's, still well inside the 10 seconds for analyzeBoard
+    public static final long TIME_BUDGET_MILLIS = 1000;
+
+    private final int[][] dist;
+    private final int[] stepCost;
+    private final int maxSteps;
+    private long deadline;
+    // The starting location, which is also the number of treasures
+    private final int start;
+
+    // `dist` and `stepCost` (the cost of stepping onto each node) are indexed by node,
+    // with the starting location as the last node.
+    public PrizeCollector(int[][] dist, int[] stepCost, int maxSteps) {
+        this.dist = dist;
+        this.stepCost = stepCost;
+        this.maxSteps = maxSteps;
+        this.start = dist.length - 1;
+    }
+
+    // How many treasures are collected walking `order` from the start
+    public int collected(int[] order) {
+        int steps = 0, at = start, count = 0;
+        for (int t : order) {
+            steps += dist[at][t];
+            if (steps - stepCost[t] >= maxSteps)
+                break;
+            ++count;
+            at = t;
+        }
+        return count;
+    }
+
+    // Returns a visiting order of every treasure that collects as many as possible
+    // before the steps run out. `tour` is the shortest tour `solver` found; it is
+    // returned as is when it collects them all.
+    public int[] plan(TourSolver solver, int[] tour) {
+        if (collected(tour) == tour.length)
+            return tour;
+        deadline = System.nanoTime() + TIME_BUDGET_MILLIS * 1_000_000L;
+
+        int[] chosen = solver.heldKarpTable() != null ? exact(solver) : insertion(tour);
+        int[] order = finish(chosen);
+        return collected(order) > collected(tour) ? order : tour;
+    }
+
+    // The largest set of treasures Held-Karp can fit in the steps, the cheapest one
+    // on ties
+    private int[] exact(TourSolver solver) {
+        int[][] table = solver.heldKarpTable();
+        int bestMask = 0, bestLast = -1, bestCount = 0;
+        for (int mask = 1; mask < table.length; ++mask) {
+            int count = Integer.bitCount(mask);
+            if (count < bestCount)
+                continue;
+            for (int j = 0; j < start; ++j) {
+                if ((mask & (1 << j)) == 0 || table[mask][j] - stepCost[j] >= maxSteps)
+                    continue;
+                if (count > bestCount || table[mask][j] < table[bestMask][bestLast]) {
+                    bestMask = mask;
+                    bestLast = j;
+                    bestCount = count;
+                }
+            }
+        }
+        return bestLast < 0 ? new int[0] : solver.heldKarpOrder(bestMask, bestLast);
+    }
+
+    // Starts from what the shortest tour collects, then keeps adding the treasure that
+    // is cheapest to fit in, shortening the route with TourImprover whenever nothing
+    // fits any more.
+    private int[] insertion(int[] tour) {
+        ArrayList<Integer> route = new ArrayList<>();
+        boolean[] inRoute = new boolean[start];
+        for (int i = 0; i < collected(tour); ++i) {
+            route.add(tour[i]);
+            inRoute[tour[i]] = true;
+        }
+
+        int length = length(route);
+        while (System.nanoTime() < deadline) {
+            // Cheapest place for the cheapest treasure, where index i inserts before
+            // route[i] and route.size() appends it
+            int bestNode = -1, bestIndex = -1, bestDelta = Integer.MAX_VALUE;
+            for (int t = 0; t < start; ++t) {
+                if (inRoute[t])
+                    continue;
+                for (int i = 0; i <= route.size(); ++i) {
+                    int prev = i == 0 ? start : route.get(i - 1);
+                    int delta = dist[prev][t];
+                    if (i < route.size())
+                        delta += dist[t][route.get(i)] - dist[prev][route.get(i)];
+                    if (delta < bestDelta) {
+                        bestNode = t;
+                        bestIndex = i;
+                        bestDelta = delta;
+                    }
+                }
+            }
+            if (bestNode < 0)
+                break;
+
+            int last = bestIndex == route.size() ? bestNode : route.get(route.size() - 1);
+            if (length + bestDelta - stepCost[last] < maxSteps) {
+                route.add(bestIndex, bestNode);
+                inRoute[bestNode] = true;
+                length += bestDelta;
+                continue;
+            }
+
+            // Nothing fits; see if the route can be made shorter
+            int[] shorter = improve(route);
+            if (shorter == null)
+                break;
+            route.clear();
+            for (int t : shorter)
+                route.add(t);
+            length = length(route);
+        }
+
+        int[] chosen = new int[route.size()];
+        for (int i = 0; i < chosen.length; ++i)
+            chosen[i] = route.get(i);
+        return chosen;
+    }
+
+    // Runs TourImprover on just the treasures in `route`. Returns null if that did
+    // not make the route shorter.
+    private int[] improve(ArrayList<Integer> route) {
+        int n = route.size();
+        if (n < 2)
+            return null;
+
+        // Distances between the route's treasures, with the start last
+        int[] nodes = new int[n + 1];
+        for (int i = 0; i < n; ++i)
+            nodes[i] = route.get(i);
+        nodes[n] = start;
+        int[][] sub = new int[n + 1][n + 1];
+        for (int i = 0; i <= n; ++i)
+            for (int j = 0; j <= n; ++j)
+                sub[i][j] = dist[nodes[i]][nodes[j]];
+
+        int[] identity = new int[n];
+        for (int i = 0; i < n; ++i)
+            identity[i] = i;
+        TourImprover improver = new TourImprover(sub, identity);
+        int[] order = improver.improve();
+        int before = length(route);
+        if (improver.cost() >= before)
+            return null;
+
+        int[] shorter = new int[n];
+        for (int i = 0; i < n; ++i)
+            shorter[i] = nodes[order[i]];
+        return shorter;
+    }
+
+    private int length(ArrayList<Integer> route) {
+        int acc = 0, at = start;
+        for (int t : route) {
+            acc += dist[at][t];
+            at = t;
+        }
+        return acc;
+    }
+
+    // Follows the chosen treasures with all the others, nearest first, so the plan
+    // still has moves if steps are left over
+    private int[] finish(int[] chosen) {
+        int[] order = Arrays.copyOf(chosen, start);
+        boolean[] used = new boolean[start];
+        for (int t : chosen)
+            used[t] = true;
+
+        int at = chosen.length > 0 ? chosen[chosen.length - 1] : start;
+        for (int i = chosen.length; i < start; ++i) {
+            int next = -1;
+            for (int t = 0; t < start; ++t)
+                if (!used[t] && (next < 0 || dist[at][t] < dist[at][next]))
+                    next = t;
+            order[i] = next;
+            used[next] = true;
+            at = next;
+        }
+        return order;
+    }
+}
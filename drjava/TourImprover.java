@@ -0,0 +1,285 @@
+import java.util.Arrays;
+import java.util.Random;
+
+// Local search for the treasure tour. The tour is an open path that starts on the
+// starting location and ends on whichever treasure is last, stored as an array of
+// nodes with the start at position 0.
+//
+// Two kinds of moves are tried:
+// - 2-opt: reverse a stretch of the tour
+// - Or-opt: move a stretch of 1 to 3 treasures somewhere else, either way around
+//   (the 3-opt moves that need no reversal in the rest of the tour)
+//
+// Only moves that create an edge between a node and one of its nearest neighbours are
+// considered, and each is priced by the few edges it changes. A node whose
+// neighbourhood had nothing to offer is left alone ("don't look" bit) until a move
+// changes one of its edges.
+//
+// Many distances on a board tie, so plain local search stops early. improve() then
+// keeps "kicking" the tour with a double bridge (swapping two stretches, which these
+// moves cannot undo in one step) and searching again, keeping the result when it is
+// no worse.
+public class TourImprover {
+    // How many of the nearest nodes are tried as new neighbours
+    public static final int NEIGHBOURS = 10;
+    public static final int MAX_SEGMENT = 3;
+    // How many times improve() kicks the tour
+    public static final int KICKS = 2000;
+
+    private static final int NONE = -1;
+
+    private final int[][] dist;
+    private final int[][] nearest;
+    private final int[] tour;
+    private final int[] pos;
+    private final int[] scratch;
+
+    // Queue of nodes whose don't-look bit is off
+    private final int[] queue;
+    private final boolean[] queued;
+    private int queueHead, queueSize;
+
+    // `dist` is indexed by node, with the starting location as the last node.
+    // `order` lists every other node, in the order they are visited.
+    public TourImprover(int[][] dist, int[] order) {
+        this.dist = dist;
+        int n = dist.length;
+
+        tour = new int[n];
+        tour[0] = n - 1;
+        System.arraycopy(order, 0, tour, 1, order.length);
+        pos = new int[n];
+        for (int i = 0; i < n; ++i)
+            pos[tour[i]] = i;
+        scratch = new int[n];
+
+        int k = Math.min(NEIGHBOURS, n - 1);
+        nearest = new int[n][k];
+        Integer[] byDistance = new Integer[n];
+        for (int from = 0; from < n; ++from) {
+            int[] row = dist[from];
+            for (int i = 0; i < n; ++i)
+                byDistance[i] = i;
+            Arrays.sort(byDistance, (a, b) -> Integer.compare(row[a], row[b]));
+            for (int i = 0, j = 0; j < k; ++i)
+                if (byDistance[i] != from)
+                    nearest[from][j++] = byDistance[i];
+        }
+
+        queue = new int[n];
+        queued = new boolean[n];
+    }
+
+    // Improves the tour until no move helps, and returns the visiting order
+    public int[] improve() {
+        return improve(KICKS);
+    }
+
+    // Same as improve(), kicking the tour `kicks` times
+    public int[] improve(int kicks) {
+        for (int node : tour)
+            push(node);
+        localSearch();
+
+        int n = tour.length;
+        if (n >= 4) {
+            // Fixed seed, so a board always gets the same tour
+            Random random = new Random(n);
+            int[] bestTour = tour.clone();
+            int bestCost = cost();
+            for (int kick = 0; kick < kicks; ++kick) {
+                doubleBridge(random);
+                localSearch();
+                int kicked = cost();
+                if (kicked <= bestCost) {
+                    bestCost = kicked;
+                    System.arraycopy(tour, 0, bestTour, 0, n);
+                } else {
+                    System.arraycopy(bestTour, 0, tour, 0, n);
+                    for (int i = 0; i < n; ++i)
+                        pos[tour[i]] = i;
+                }
+            }
+        }
+        return Arrays.copyOfRange(tour, 1, tour.length);
+    }
+
+    // Turns S A B C into S B A C, at random cut points after the start
+    private void doubleBridge(Random random) {
+        int n = tour.length;
+        int a = 1 + random.nextInt(n - 1), b = 1 + random.nextInt(n - 1);
+        int c = 1 + random.nextInt(n - 1);
+        int p1 = Math.min(a, Math.min(b, c)), p3 = Math.max(a, Math.max(b, c));
+        int p2 = a + b + c - p1 - p3;
+        if (p1 == p2 || p2 == p3)
+            return;
+
+        int out = p1;
+        for (int i = p2; i < p3; ++i)
+            scratch[out++] = tour[i];
+        for (int i = p1; i < p2; ++i)
+            scratch[out++] = tour[i];
+        System.arraycopy(scratch, p1, tour, p1, p3 - p1);
+        for (int i = p1; i < p3; ++i)
+            pos[tour[i]] = i;
+
+        push(tour[p1 - 1]);
+        push(tour[p1]);
+        push(tour[p1 + p3 - p2 - 1]);
+        push(tour[p1 + p3 - p2]);
+        push(tour[p3 - 1]);
+        if (p3 < n)
+            push(tour[p3]);
+    }
+
+    private void localSearch() {
+        while (queueSize > 0) {
+            int c = queue[queueHead];
+            queueHead = (queueHead + 1) % queue.length;
+            --queueSize;
+            queued[c] = false;
+
+            while (improveAround(c))
+                push(c);
+        }
+    }
+
+    // Total distance of the tour
+    public int cost() {
+        int acc = 0;
+        for (int i = 0; i + 1 < tour.length; ++i)
+            acc += dist[tour[i]][tour[i + 1]];
+        return acc;
+    }
+
+    private void push(int node) {
+        if (!queued[node]) {
+            queued[node] = true;
+            queue[(queueHead + queueSize) % queue.length] = node;
+            ++queueSize;
+        }
+    }
+
+    // The node after position i, or NONE past the end of the tour
+    private int after(int i) {
+        return i + 1 < tour.length ? tour[i + 1] : NONE;
+    }
+
+    // Distance, where leading to or from NONE (the open end of the tour) is free
+    private int d(int a, int b) {
+        return (a == NONE || b == NONE) ? 0 : dist[a][b];
+    }
+
+    // Tries to apply one improving move that gives `c` an edge to a near neighbour
+    private boolean improveAround(int c) {
+        for (int n : nearest[c]) {
+            int p = pos[c], q = pos[n];
+            // Stop once no edge to a nearer node can pay for itself
+            if (d(c, n) >= Math.max(p > 0 ? d(tour[p - 1], c) : 0, d(c, after(p))))
+                break;
+            if (tryTwoOpt(Math.min(p, q), Math.max(p, q))
+                    || (Math.min(p, q) >= 1 && tryTwoOpt(Math.min(p, q) - 1, Math.max(p, q) - 1))
+                    || tryOrOpt(c, n))
+                return true;
+        }
+        return false;
+    }
+
+    // Reverses tour[i + 1 .. j] if that shortens the tour
+    private boolean tryTwoOpt(int i, int j) {
+        if (j < i + 2)
+            return false;
+        int a = tour[i], b = tour[i + 1], c = tour[j], e = after(j);
+        int delta = d(a, c) + d(b, e) - d(a, b) - d(c, e);
+        if (delta >= 0)
+            return false;
+
+        for (int lo = i + 1, hi = j; lo < hi; ++lo, --hi) {
+            int t = tour[lo];
+            tour[lo] = tour[hi];
+            tour[hi] = t;
+            pos[tour[lo]] = lo;
+            pos[tour[hi]] = hi;
+        }
+        push(a);
+        push(b);
+        push(c);
+        if (e != NONE)
+            push(e);
+        return true;
+    }
+
+    // Moves a stretch of treasures that ends on `c` so that `c` is next to `n`
+    private boolean tryOrOpt(int c, int n) {
+        int p = pos[c];
+        for (int len = 1; len <= MAX_SEGMENT; ++len) {
+            // The stretch either starts or ends on c, and never includes the start
+            if (p + len - 1 < tour.length && tryMove(p, p + len - 1, n))
+                return true;
+            if (len > 1 && p - len + 1 >= 1 && tryMove(p - len + 1, p, n))
+                return true;
+        }
+        return false;
+    }
+
+    // Moves tour[from .. to] next to `n`, on either side and either way around, if that
+    // shortens the tour
+    private boolean tryMove(int from, int to, int n) {
+        if (from < 1) // The start stays put
+            return false;
+        int q = pos[n];
+        if (q >= from && q <= to)
+            return false;
+
+        int before = tour[from - 1], first = tour[from], last = tour[to], after = after(to);
+        int removed = d(before, first) + d(last, after) - d(before, after);
+
+        int bestDelta = 0, bestK = -1;
+        boolean bestReversed = false;
+        // Insert between tour[k] and the node after it, where k is n or the node before n
+        for (int k = q - 1; k <= q; ++k) {
+            if (k < 0 || (k >= from - 1 && k <= to))
+                continue;
+            int x = tour[k], y = after(k);
+            int forward = d(x, first) + d(last, y) - d(x, y) - removed;
+            int reversed = d(x, last) + d(first, y) - d(x, y) - removed;
+            if (forward < bestDelta) {
+                bestDelta = forward;
+                bestK = k;
+                bestReversed = false;
+            }
+            if (reversed < bestDelta) {
+                bestDelta = reversed;
+                bestK = k;
+                bestReversed = true;
+            }
+        }
+        if (bestK < 0)
+            return false;
+
+        // Rebuild the tour with the stretch in its new place
+        int x = tour[bestK], y = after(bestK);
+        int length = to - from + 1, out = 0;
+        for (int i = 0; i < tour.length; ++i) {
+            if (i >= from && i <= to)
+                continue;
+            scratch[out++] = tour[i];
+            if (i == bestK)
+                for (int s = 0; s < length; ++s)
+                    scratch[out++] = tour[bestReversed ? to - s : from + s];
+        }
+        System.arraycopy(scratch, 0, tour, 0, tour.length);
+        for (int i = 0; i < tour.length; ++i)
+            pos[tour[i]] = i;
+
+        push(before);
+        push(first);
+        push(last);
+        push(x);
+        if (after != NONE)
+            push(after);
+        if (y != NONE)
+            push(y);
+        return true;
+    }
+}
@@ -0,0 +1,244 @@
+import java.util.Arrays;
+
+// Finds the cheapest order to visit every treasure, given the table of distances between
+// them. A tour starts at the starting location and ends at whichever treasure is last.
+//
+// With few treasures the best tour is found exactly by dynamic programming over the
+// subsets of treasures (Held-Karp). With more, a depth-first branch and bound search
+// improves on a tour we already have, and returns the best one so far when time is up,
+// when the best tour is as cheap as the lower bound, or when it has not improved for a
+// while.
+public class TourSolver {
+    // TestHarness gives analyzeBoard 10 seconds. This leaves plenty of that for finding
+    // the paths and for slower machines. -DtourSolver.budgetMillis=... changes it.
+    public static final long TIME_BUDGET_MILLIS =
+            Long.getLong("tourSolver.budgetMillis", 4000);
+    // Branch and bound gives up when the best tour has not improved for this long. Its
+    // improvements come early, and most of the search after them only proves that
+    // nothing is cheaper. -DtourSolver.stallMillis=... changes it, 0 turns it off.
+    public static final long STALL_MILLIS = Long.getLong("tourSolver.stallMillis", 250);
+    // Held-Karp needs 2^n * n table entries for n treasures, ~20MB at 18
+    public static final int HELD_KARP_MAX_TREASURES = 18;
+
+    private static final int INFINITY = Integer.MAX_VALUE / 2;
+
+    private final int[][] dist;
+    // The starting location, which is also the number of treasures
+    private final int start;
+    private final int count;
+    private final long deadline;
+
+    // cost[mask][j] from Held-Karp, once it has run to the end
+    private int[][] table;
+
+    // Branch and bound state
+    private int[][] nearest;
+    private int[] path;
+    private boolean[] used;
+    private int[] best;
+    private int bestCost;
+    private int[] primKey;
+    private boolean[] primDone;
+    private long expanded;
+    // System.nanoTime() when branch and bound last found a cheaper tour
+    private long improvedAt;
+    // No tour costs less than this
+    private int rootBound;
+    private boolean stopped;
+    private boolean timedOut;
+
+    // `dist` is indexed by node. The last node is the starting location and the others
+    // are the treasures. Gives up at System.nanoTime() `deadline`.
+    public TourSolver(int[][] dist, long deadline) {
+        this.dist = dist;
+        this.start = dist.length - 1;
+        this.count = dist.length - 1;
+        this.deadline = deadline;
+    }
+
+    // Returns the visiting order of the treasures, which is never worse than `initial`
+    public int[] solve(int[] initial) {
+        if (count <= 1)
+            return initial.clone();
+        if (count <= HELD_KARP_MAX_TREASURES) {
+            int[] exact = heldKarp();
+            if (exact != null)
+                return exact;
+        }
+        return branchAndBound(initial);
+    }
+
+    // Whether the last solve() stopped because it ran out of time
+    public boolean timedOut() {
+        return timedOut;
+    }
+
+    // The Held-Karp table of the last solve(): the cheapest way to visit the treasures
+    // in `mask`, ending on j, is heldKarpTable()[mask][j]. Null if it did not run.
+    public int[][] heldKarpTable() {
+        return table;
+    }
+
+    // The order behind heldKarpTable()[mask][last]
+    public int[] heldKarpOrder(int mask, int last) {
+        int[] order = new int[Integer.bitCount(mask)];
+        for (int pos = order.length - 1; pos > 0; --pos) {
+            order[pos] = last;
+            int prevMask = mask & ~(1 << last);
+            for (int k = 0; k < count; ++k)
+                if ((prevMask & (1 << k)) != 0
+                        && table[prevMask][k] + dist[k][last] == table[mask][last]) {
+                    last = k;
+                    break;
+                }
+            mask = prevMask;
+        }
+        order[0] = last;
+        return order;
+    }
+
+    // Total distance of visiting the treasures in `order`
+    public int cost(int[] order) {
+        int acc = 0, at = start;
+        for (int t : order) {
+            acc += dist[at][t];
+            at = t;
+        }
+        return acc;
+    }
+
+    // cost[mask][j] is the cheapest way to visit the treasures in `mask`, ending on j.
+    // Returns null if it runs out of time.
+    private int[] heldKarp() {
+        int full = (1 << count) - 1;
+        int[][] cost = new int[full + 1][count];
+        for (int[] row : cost)
+            Arrays.fill(row, INFINITY);
+        for (int j = 0; j < count; ++j)
+            cost[1 << j][j] = dist[start][j];
+
+        for (int mask = 1; mask <= full; ++mask) {
+            if ((mask & 0xff) == 0 && System.nanoTime() > deadline) {
+                timedOut = true;
+                return null;
+            }
+            for (int j = 0; j < count; ++j) {
+                int here = cost[mask][j];
+                if (here == INFINITY)
+                    continue;
+                for (int k = 0; k < count; ++k) {
+                    if ((mask & (1 << k)) != 0)
+                        continue;
+                    int next = mask | (1 << k);
+                    if (here + dist[j][k] < cost[next][k])
+                        cost[next][k] = here + dist[j][k];
+                }
+            }
+        }
+
+        // Walk back from the cheapest end, finding the step each entry was built from
+        table = cost;
+        int last = 0;
+        for (int j = 1; j < count; ++j)
+            if (cost[full][j] < cost[full][last])
+                last = j;
+        return heldKarpOrder(full, last);
+    }
+
+    private int[] branchAndBound(int[] initial) {
+        // Try the closest treasures first, so good tours are found early
+        nearest = new int[count + 1][];
+        for (int from = 0; from <= count; ++from) {
+            int[] row = dist[from];
+            Integer[] byDistance = new Integer[count];
+            for (int k = 0; k < count; ++k)
+                byDistance[k] = k;
+            Arrays.sort(byDistance, (a, b) -> Integer.compare(row[a], row[b]));
+            nearest[from] = new int[count];
+            for (int k = 0; k < count; ++k)
+                nearest[from][k] = byDistance[k];
+        }
+
+        path = new int[count];
+        used = new boolean[count];
+        best = initial.clone();
+        bestCost = cost(initial);
+        primKey = new int[count];
+        primDone = new boolean[count];
+        expanded = 0;
+        improvedAt = System.nanoTime();
+        rootBound = lowerBound(start);
+        stopped = false;
+
+        search(0, start, 0);
+        return best;
+    }
+
+    // `at` is the node we are on
+    private void search(int depth, int at, int costSoFar) {
+        if (stopped || ((++expanded & 0x3ff) == 0 && outOfTime()))
+            return;
+        if (depth == count) {
+            if (costSoFar < bestCost) {
+                bestCost = costSoFar;
+                System.arraycopy(path, 0, best, 0, count);
+                improvedAt = System.nanoTime();
+                // Nothing can be cheaper
+                stopped = bestCost <= rootBound;
+            }
+            return;
+        }
+        if (costSoFar + lowerBound(at) >= bestCost)
+            return;
+
+        for (int k : nearest[at]) {
+            if (used[k])
+                continue;
+            used[k] = true;
+            path[depth] = k;
+            search(depth + 1, k, costSoFar + dist[at][k]);
+            used[k] = false;
+            if (stopped)
+                return;
+        }
+    }
+
+    // Whether to stop the search: past the deadline, or too long since the best tour
+    // last improved
+    private boolean outOfTime() {
+        long now = System.nanoTime();
+        if (now > deadline)
+            timedOut = true;
+        else if (STALL_MILLIS <= 0 || now - improvedAt < STALL_MILLIS * 1_000_000L)
+            return false;
+        stopped = true;
+        return true;
+    }
+
+    // Any path from `at` through every unused treasure is a spanning tree of them, so the
+    // weight of their minimum spanning tree (Prim's algorithm) is never more than it costs.
+    private int lowerBound(int at) {
+        int remaining = 0;
+        for (int k = 0; k < count; ++k) {
+            primDone[k] = used[k];
+            if (!used[k]) {
+                primKey[k] = dist[at][k];
+                ++remaining;
+            }
+        }
+
+        int total = 0;
+        while (remaining-- > 0) {
+            int next = -1;
+            for (int k = 0; k < count; ++k)
+                if (!primDone[k] && (next < 0 || primKey[k] < primKey[next]))
+                    next = k;
+            primDone[next] = true;
+            total += primKey[next];
+            for (int k = 0; k < count; ++k)
+                if (!primDone[k] && dist[next][k] < primKey[k])
+                    primKey[k] = dist[next][k];
+        }
+        return total;
+    }
+}
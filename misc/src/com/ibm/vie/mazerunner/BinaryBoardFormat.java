@@ -0,0 +1,257 @@
+/**
+ * (C) Copyright IBM Corp. 2016,2022. All Rights Reserved. US Government Users Restricted Rights - Use,
+ * duplication or disclosure restricted by GSA ADP Schedule Contract with IBM Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.vie.mazerunner;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import com.ibm.vie.mazerunner.squares.SquareTypes;
+
+/**
+ * Reads and writes boards in a compact binary file, as an alternative to the comma-separated board
+ * files. Each square takes 4 bits instead of 2 characters, and the squares can also be compressed,
+ * so large boards take less disk and load faster.
+ *
+ * The layout of a file, in big-endian order:
+ *
+ * <pre>
+ * int    magic number, "THBF"
+ * byte   format version
+ * byte   flags: 1 if the squares are compressed with {@link Deflater}
+ * int    width, height, maximum steps, starting row, starting column
+ * int    number of bytes that follow
+ * byte[] the SquareTypes code of every square, row by row, two squares per byte with the first
+ *        in the high 4 bits; compressed if the flag says so
+ * </pre>
+ */
+public final class BinaryBoardFormat {
+  /**
+   * The file name extension of binary board files.
+   */
+  public static final String EXTENSION = ".thb";
+
+  /**
+   * The version of the format written. Files of newer versions cannot be read.
+   */
+  public static final int VERSION = 1;
+
+  private static final int MAGIC = 0x54484246;
+  private static final int DEFLATED = 1;
+  private static final int HEADER_BYTES = 4 + 1 + 1 + 4 * 5 + 4;
+
+  private BinaryBoardFormat() {}
+
+  /**
+   * @param path The path of a board file
+   * @return true if the path has the extension of a binary board file
+   */
+  public static boolean isBinaryBoard(String path) {
+    return path.toLowerCase().endsWith(EXTENSION);
+  }
+
+  /**
+   * Reads a binary board file.
+   *
+   * @param path The path of the file
+   * @return the board, named after the file
+   * @throws BoardFormatException if the file does not hold a valid board
+   */
+  public static MapBoard read(String path) {
+    Path file = Paths.get(path);
+    String name = file.getFileName().toString();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return read(name, in);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } catch (BufferUnderflowException e) {
+      throw new BoardFormatException(name, "The file is cut short");
+    }
+  }
+
+  private static MapBoard read(String name, ByteBuffer in) {
+    if (in.remaining() < 4 || in.getInt() != MAGIC) {
+      throw new BoardFormatException(name, "Not a binary board file");
+    }
+    int version = in.get();
+    if (version < 1 || version > VERSION) {
+      throw new BoardFormatException(name, "Unsupported format version " + version);
+    }
+    int flags = in.get();
+    int width = in.getInt();
+    int height = in.getInt();
+    int maxSteps = in.getInt();
+    int startRow = in.getInt();
+    int startCol = in.getInt();
+    int length = in.getInt();
+    if (length < 0 || length > in.remaining()) {
+      throw new BoardFormatException(name, "The file is cut short");
+    }
+    if (width < 3 || height < 3 || (long) width * height > Integer.MAX_VALUE) {
+      throw new BoardFormatException(name, "Invalid board size " + width + "x" + height);
+    }
+
+    int cells = width * height;
+    byte[] packed = new byte[(cells + 1) / 2];
+    if ((flags & DEFLATED) != 0) {
+      byte[] compressed = new byte[length];
+      in.get(compressed);
+      Inflater inflater = new Inflater();
+      try {
+        inflater.setInput(compressed);
+        if (inflater.inflate(packed) != packed.length || !inflater.finished()) {
+          throw new BoardFormatException(name, "The squares do not match the board size");
+        }
+      } catch (DataFormatException e) {
+        throw new BoardFormatException(name, "The squares are not valid compressed data");
+      } finally {
+        inflater.end();
+      }
+    } else {
+      if (length != packed.length) {
+        throw new BoardFormatException(name, "The squares do not match the board size");
+      }
+      in.get(packed);
+    }
+
+    byte[] terrain = new byte[cells];
+    for (int i = 0; i < cells; i += 2) {
+      terrain[i] = (byte) ((packed[i / 2] >> 4) & 0xf);
+      if (i + 1 < cells) {
+        terrain[i + 1] = (byte) (packed[i / 2] & 0xf);
+      }
+    }
+
+    int[] treasureCells = new int[16];
+    int treasureCount = 0;
+    for (int i = 0; i < cells; ++i) {
+      if (terrain[i] == SquareTypes.TREASURE) {
+        if (treasureCount == treasureCells.length) {
+          treasureCells = Arrays.copyOf(treasureCells, treasureCount * 2);
+        }
+        treasureCells[treasureCount++] = i;
+      } else if (terrain[i] > SquareTypes.MUD) { // The highest code
+        throw new BoardFormatException(name, "Unknown square type " + terrain[i] + " at row "
+            + i / width + ", column " + i % width);
+      }
+    }
+    for (int row = 0; row < height; ++row) {
+      int step = (row == 0 || row == height - 1) ? 1 : width - 1;
+      for (int col = 0; col < width; col += step) {
+        if (terrain[row * width + col] != SquareTypes.WALL) {
+          throw new BoardFormatException(name,
+              "The square at row " + row + ", column " + col + " is on the edge but not a wall");
+        }
+      }
+    }
+
+    if (startRow <= 0 || startRow >= height - 1 || startCol <= 0 || startCol >= width - 1
+        || terrain[startRow * width + startCol] != SquareTypes.SPACE) {
+      throw new BoardFormatException(name, "Invalid board: the [P]layer space at row " + startRow
+          + ", column " + startCol + " is not an open space");
+    }
+    if (treasureCount == 0) {
+      throw new BoardFormatException(name,
+          "Invalid board: At least one [T]reasure space is required.");
+    }
+    return MapBoard.fromLayout(name, width, height, maxSteps, new Location(startRow, startCol),
+        terrain, Arrays.copyOf(treasureCells, treasureCount));
+  }
+
+  /**
+   * Writes a board to a binary board file. The file holds the board as it was loaded, with every
+   * treasure, whatever has been collected since. As in a comma-separated board file, the starting
+   * location is an open space and the squares around the edge are walls.
+   *
+   * @param path The path of the file
+   * @param board The board
+   * @param compress true to compress the squares
+   * @throws IOException if the file cannot be written
+   */
+  public static void write(String path, IBoard board, boolean compress) throws IOException {
+    int width = board.getWidth();
+    int height = board.getHeight();
+    byte[] terrain;
+    if (board instanceof MapBoard) {
+      terrain = ((MapBoard) board).getTerrainCodes().clone();
+    } else {
+      terrain = new byte[width * height];
+      for (int row = 0; row < height; ++row) {
+        for (int col = 0; col < width; ++col) {
+          terrain[row * width + col] =
+              SquareTypes.codeOf(board.getSquareAt(new Location(row, col)));
+        }
+      }
+    }
+
+    // Like in a comma-separated board file, the starting location is an open space and the squares
+    // around the edge are always walls
+    Location start = board.getStartingLocation();
+    terrain[start.getRow() * width + start.getCol()] = SquareTypes.SPACE;
+    for (int row = 0; row < height; ++row) {
+      int step = (row == 0 || row == height - 1) ? 1 : width - 1;
+      for (int col = 0; col < width; col += step) {
+        terrain[row * width + col] = SquareTypes.WALL;
+      }
+    }
+
+    byte[] packed = new byte[(terrain.length + 1) / 2];
+    for (int i = 0; i < terrain.length; ++i) {
+      packed[i / 2] |= (i % 2 == 0) ? terrain[i] << 4 : terrain[i];
+    }
+    int length = packed.length;
+    if (compress) {
+      Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+      try {
+        deflater.setInput(packed);
+        deflater.finish();
+        byte[] compressed = new byte[packed.length + 64];
+        length = 0;
+        while (!deflater.finished()) {
+          if (length == compressed.length) {
+            compressed = Arrays.copyOf(compressed, compressed.length * 2);
+          }
+          length += deflater.deflate(compressed, length, compressed.length - length);
+        }
+        packed = compressed;
+      } finally {
+        deflater.end();
+      }
+    }
+
+    ByteBuffer out = ByteBuffer.allocate(HEADER_BYTES + length);
+    out.putInt(MAGIC).put((byte) VERSION).put((byte) (compress ? DEFLATED : 0));
+    out.putInt(width).putInt(height).putInt(board.getMaxSteps()).putInt(start.getRow())
+        .putInt(start.getCol()).putInt(length);
+    out.put(packed, 0, length);
+    out.flip();
+    try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.WRITE,
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (out.hasRemaining()) {
+        channel.write(out);
+      }
+    }
+  }
+}
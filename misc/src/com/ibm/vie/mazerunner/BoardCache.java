@@ -0,0 +1,251 @@
+/**
+ * (C) Copyright IBM Corp. 2016,2022. All Rights Reserved. US Government Users Restricted Rights - Use,
+ * duplication or disclosure restricted by GSA ADP Schedule Contract with IBM Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.vie.mazerunner;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Loads boards through cache files, one for each board file, in a directory the caller names or
+ * the {@value #DIRECTORY_PROPERTY} system property gives. Without one, boards are loaded without a
+ * cache. The cache file holds the parsed squares and the treasures, so loading a board again skips
+ * reading the board file. The distances between the starting location and the treasures are added
+ * once something asks the board's {@link DistanceField} for them, and the next load starts from
+ * them instead of working them out again.
+ *
+ * A cache file records the SHA-256 hash of the board file it was made from. When the board file
+ * changes, the hashes no longer match and the cache file is made again. Board files of the same
+ * name from different directories share a cache file, so each remakes it in turn. Cache files that
+ * cannot be written, for example in a read-only directory, are simply skipped.
+ *
+ * The layout of a cache file, in big-endian order:
+ *
+ * <pre>
+ * int      magic number, "THBC"
+ * int      format version
+ * byte[32] SHA-256 hash of the board file
+ * int      width, height, maximum steps, starting row, starting column
+ * int      number of treasures, then the index of each treasure square
+ * byte[]   the SquareTypes code of every square, padded to a multiple of 4 bytes
+ * int      number of sources, then the DistanceField#getSourceDistances() table row by row, or
+ *          0 until the distances are worked out
+ * </pre>
+ */
+public final class BoardCache {
+  /**
+   * The system property with the directory for the cache files, when the caller does not name one.
+   */
+  public static final String DIRECTORY_PROPERTY = "treasurehunt.cacheDir";
+
+  private static final int MAGIC = 0x54484243;
+  private static final int VERSION = 2;
+  private static final int HASH_BYTES = 32;
+
+  private BoardCache() {}
+
+  /**
+   * @return the directory the {@value #DIRECTORY_PROPERTY} system property gives, or null if it is
+   *         not set
+   */
+  public static Path getDirectory() {
+    String directory = System.getProperty(DIRECTORY_PROPERTY);
+    return (directory == null || directory.isEmpty()) ? null : Paths.get(directory);
+  }
+
+  /**
+   * Loads a board with the cache directory the {@value #DIRECTORY_PROPERTY} system property gives.
+   *
+   * @see #load(String, Path)
+   */
+  public static MapBoard load(String boardFile) {
+    return load(boardFile, getDirectory());
+  }
+
+  /**
+   * Loads a board, from its cache file if it has an up-to-date one. If the cache file has the
+   * distances between the board's sources, its distance field is put in the
+   * {@link DistanceFieldCache} with them.
+   *
+   * @param boardFile The path of a board file, as for {@link MapBoard#loadBoard(String)}
+   * @param directory The directory of the cache files, made if needed, or null to load the board
+   *        without a cache
+   * @return the board
+   */
+  public static MapBoard load(String boardFile, Path directory) {
+    if (directory == null) {
+      return MapBoard.loadBoard(boardFile);
+    }
+    Path path = Paths.get(boardFile);
+    Path cacheFile = cacheFileOf(path, directory);
+    byte[] hash;
+    try {
+      hash = MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(path));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("Every JVM has SHA-256", e);
+    }
+
+    if (Files.isRegularFile(cacheFile)) {
+      MapBoard board = read(cacheFile, path.getFileName().toString(), hash);
+      if (board != null) {
+        return board;
+      }
+    }
+
+    MapBoard board = MapBoard.loadBoard(boardFile);
+    byte[] layout = layout(hash, board);
+    try {
+      write(cacheFile, layout, null);
+    } catch (IOException e) {
+      // The cache only saves time; the board is loaded all the same
+      return board;
+    }
+    saveDistancesLater(cacheFile, layout, board);
+    return board;
+  }
+
+  /**
+   * @return where the cache file of a board file goes in a cache directory
+   */
+  public static Path cacheFileOf(Path boardFile, Path directory) {
+    return directory.resolve(boardFile.getFileName() + ".bin");
+  }
+
+  // Returns null if the cache file is out of date or cannot be read
+  private static MapBoard read(Path cacheFile, String boardName, byte[] hash) {
+    try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.READ)) {
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+        return null;
+      }
+      byte[] recorded = new byte[HASH_BYTES];
+      buffer.get(recorded);
+      if (!Arrays.equals(recorded, hash)) {
+        return null;
+      }
+
+      int width = buffer.getInt();
+      int height = buffer.getInt();
+      int maxSteps = buffer.getInt();
+      Location start = new Location(buffer.getInt(), buffer.getInt());
+      int[] treasureCells = new int[buffer.getInt()];
+      buffer.asIntBuffer().get(treasureCells);
+      buffer.position(buffer.position() + 4 * treasureCells.length);
+      byte[] terrain = new byte[width * height];
+      buffer.get(terrain);
+      buffer.position(buffer.position() + padding(terrain.length));
+      MapBoard board = MapBoard.fromLayout(boardName, width, height, maxSteps, start, terrain,
+          treasureCells);
+
+      byte[] layout = new byte[buffer.position()];
+      int sources = buffer.getInt();
+      if (sources == 0) {
+        buffer.position(0);
+        buffer.get(layout);
+        saveDistancesLater(cacheFile, layout, board);
+        return board;
+      }
+      int[][] between = new int[sources][sources];
+      IntBuffer table = buffer.asIntBuffer();
+      for (int[] row : between) {
+        table.get(row);
+      }
+      DistanceFieldCache.getInstance().get(board, between);
+      return board;
+    } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+      // A damaged cache file is made again
+      return null;
+    }
+  }
+
+  // Rewrites the cache file with the distances once the board's distance field works them out
+  private static void saveDistancesLater(Path cacheFile, byte[] layout, MapBoard board) {
+    Consumer<int[][]> save = between -> {
+      try {
+        write(cacheFile, layout, between);
+      } catch (IOException e) {
+        // The next load works them out again
+      }
+    };
+    DistanceFieldCache.getInstance().get(board).whenBetweenWorkedOut(save);
+  }
+
+  // Everything in a cache file before the distances
+  private static byte[] layout(byte[] hash, MapBoard board) {
+    byte[] terrain = board.getTerrainCodes();
+    int[] treasureCells = board.getTreasureCells();
+    ByteBuffer buffer = ByteBuffer.allocate(4 * 2 + HASH_BYTES + 4 * 6 + 4 * treasureCells.length
+        + terrain.length + padding(terrain.length));
+
+    buffer.putInt(MAGIC).putInt(VERSION).put(hash);
+    Location start = board.getStartingLocation();
+    buffer.putInt(board.getWidth()).putInt(board.getHeight()).putInt(board.getMaxSteps())
+        .putInt(start.getRow()).putInt(start.getCol());
+    buffer.putInt(treasureCells.length);
+    for (int idx : treasureCells) {
+      buffer.putInt(idx);
+    }
+    buffer.put(terrain).put(new byte[padding(terrain.length)]);
+    return buffer.array();
+  }
+
+  // Writes the layout and the distances, if they are not null
+  private static void write(Path cacheFile, byte[] layout, int[][] between) throws IOException {
+    int sources = (between == null) ? 0 : between.length;
+    ByteBuffer buffer = ByteBuffer.allocate(layout.length + 4 + 4 * sources * sources);
+    buffer.put(layout).putInt(sources);
+    for (int i = 0; i < sources; ++i) {
+      for (int d : between[i]) {
+        buffer.putInt(d);
+      }
+    }
+    buffer.flip();
+
+    // Written aside and then moved into place, so nobody reads half a file
+    Files.createDirectories(cacheFile.getParent());
+    Path temp =
+        Files.createTempFile(cacheFile.getParent(), cacheFile.getFileName().toString(), null);
+    try {
+      try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+      }
+      Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  private static int padding(int length) {
+    return (4 - length % 4) % 4;
+  }
+}
@@ -0,0 +1,51 @@
+/**
+ * (C) Copyright IBM Corp. 2016,2022. All Rights Reserved. US Government Users Restricted Rights - Use,
+ * duplication or disclosure restricted by GSA ADP Schedule Contract with IBM Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.vie.mazerunner;
+
+/**
+ * This is thrown when a board file cannot be loaded. When the problem is at a particular place in
+ * the file, the message starts with the line and column, counting from 1.
+ */
+public class BoardFormatException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final int line, column;
+
+  public BoardFormatException(String file, String message) {
+    this(file, 0, 0, message);
+  }
+
+  public BoardFormatException(String file, int line, int column, String message) {
+    super(line > 0 ? file + ":" + line + ":" + column + ": " + message : file + ": " + message);
+    this.line = line;
+    this.column = column;
+  }
+
+  /**
+   * @return the line of the file the problem is on, or 0 if it is not on a particular line
+   */
+  public int getLine() {
+    return line;
+  }
+
+  /**
+   * @return the column of the file the problem is at, or 0 if it is not on a particular line
+   */
+  public int getColumn() {
+    return column;
+  }
+}
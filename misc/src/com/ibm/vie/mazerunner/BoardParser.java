@@ -0,0 +1,297 @@
+/**
+ * (C) Copyright IBM Corp. 2016,2022. All Rights Reserved. US Government Users Restricted Rights - Use,
+ * duplication or disclosure restricted by GSA ADP Schedule Contract with IBM Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.vie.mazerunner;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import com.ibm.vie.mazerunner.squares.SquareTypes;
+
+/**
+ * Reads board files for {@link MapBoard#parseBoard(String)}. A board file has a line of
+ * comma-separated values for each row of the board, and a last line whose first value is the
+ * maximum number of steps. A square is given by the first character of its value. Rows shorter
+ * than the longest are filled with spaces, and the squares around the edge are always walls.
+ * Spaces and tabs before a value are ignored, values may be quoted, and empty lines are skipped.
+ *
+ * The file is memory-mapped and read once, decoding each value straight into a
+ * {@link SquareTypes} code as it goes. Only laying the rows out into the board's terrain waits
+ * until the width of the board is known.
+ */
+final class BoardParser {
+  // Code of a [P]layer space until the rows are laid out
+  private static final byte PLAYER = -1;
+
+  private final String file;
+  private final ByteBuffer in;
+  private final int limit;
+  private int pos;
+  private int line = 1;
+  private int lineStart;
+
+  // The squares of every record, one record after the other
+  private byte[] codes = new byte[1024];
+  private int size;
+  // Where each record starts in codes
+  private int[] recordStart = new int[64];
+  private int records;
+  // Every [P]layer space: its record, its column in the record, and its line and column in the
+  // file
+  private int[] players = new int[4 * 4];
+  private int playerCount;
+  // The first value of the latest record, which is the maximum steps for the last one
+  private int firstValueStart, firstValueEnd, firstValueLine, firstValueColumn;
+
+  private BoardParser(String file, ByteBuffer in) {
+    this.file = file;
+    this.in = in;
+    this.limit = in.limit();
+  }
+
+  static MapBoard parse(String boardConfig) {
+    Path path = Paths.get(boardConfig);
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return new BoardParser(path.getFileName().toString(), in).parse();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private MapBoard parse() {
+    while (pos < limit) {
+      byte b = in.get(pos);
+      if (b == '\r' || b == '\n') {
+        endLine();
+      } else {
+        readRecord();
+      }
+    }
+    if (records == 0) {
+      throw new BoardFormatException(file, "The file is empty");
+    }
+
+    // Every record but the last is a row of the board
+    int h = records - 1;
+    int w = 0;
+    for (int j = 0; j < h; ++j) {
+      w = Math.max(w, recordStart[j + 1] - recordStart[j]);
+    }
+    int maxSteps = readMaxSteps();
+
+    byte[] terrain = new byte[w * h];
+    int[] treasureCells = new int[16];
+    int treasureCount = 0;
+    for (int j = 0; j < h; ++j) {
+      int base = recordStart[j];
+      int length = recordStart[j + 1] - base;
+      for (int i = 0; i < w; ++i) {
+        byte code;
+        if (j == 0 || j == h - 1 || i == 0 || i == w - 1) { // Bounding square, always walls
+          code = SquareTypes.WALL;
+        } else if (i < length) {
+          code = codes[base + i] == PLAYER ? SquareTypes.SPACE : codes[base + i];
+        } else {
+          code = SquareTypes.SPACE;
+        }
+        terrain[j * w + i] = code;
+        if (code == SquareTypes.TREASURE) {
+          if (treasureCount == treasureCells.length) {
+            treasureCells = Arrays.copyOf(treasureCells, treasureCount * 2);
+          }
+          treasureCells[treasureCount++] = j * w + i;
+        }
+      }
+    }
+
+    Location start = null;
+    int startLine = 0, startColumn = 0;
+    for (int p = 0; p < 4 * playerCount; p += 4) {
+      int j = players[p], i = players[p + 1];
+      if (j == 0 || j >= h - 1 || i == 0 || i == w - 1) {
+        continue; // Walled over
+      }
+      if (start != null) {
+        throw new BoardFormatException(file, players[p + 2], players[p + 3],
+            "Invalid board: a second [P]layer space, the first is at line " + startLine
+                + ", column " + startColumn);
+      }
+      start = new Location(j, i);
+      startLine = players[p + 2];
+      startColumn = players[p + 3];
+    }
+
+    if (start == null) {
+      throw new BoardFormatException(file, "Invalid board: missing [P]layer space");
+    }
+    if (treasureCount == 0) {
+      throw new BoardFormatException(file,
+          "Invalid board: At least one [T]reasure space is required.");
+    }
+    return MapBoard.fromLayout(file, w, h, maxSteps, start, terrain,
+        Arrays.copyOf(treasureCells, treasureCount));
+  }
+
+  private void readRecord() {
+    if (records + 1 == recordStart.length) {
+      recordStart = Arrays.copyOf(recordStart, records * 2);
+    }
+    recordStart[records] = size;
+    boolean firstValue = true;
+    while (true) {
+      while (pos < limit && (in.get(pos) == ' ' || in.get(pos) == '\t')) {
+        ++pos;
+      }
+      int valueLine = line;
+      int valueColumn = pos - lineStart + 1;
+      int valueStart = pos, valueEnd;
+      int c = -1;
+      if (pos < limit && in.get(pos) == '"') {
+        valueStart = ++pos;
+        while (true) {
+          if (pos >= limit) {
+            throw new BoardFormatException(file, valueLine, valueColumn,
+                "The quoted value is never closed");
+          }
+          byte b = in.get(pos++);
+          if (b == '"') {
+            if (pos < limit && in.get(pos) == '"') {
+              ++pos; // An escaped quote
+            } else {
+              break;
+            }
+          } else if (b == '\n' || (b == '\r' && (pos == limit || in.get(pos) != '\n'))) {
+            ++line;
+            lineStart = pos;
+          }
+          if (c < 0) {
+            c = b;
+          }
+        }
+        valueEnd = pos - 1;
+        skipValue(); // Anything after the closing quote
+      } else {
+        if (pos < limit && !isDelimiter(in.get(pos))) {
+          c = in.get(pos);
+        }
+        skipValue();
+        valueEnd = pos;
+      }
+
+      if (firstValue) {
+        firstValueStart = valueStart;
+        firstValueEnd = valueEnd;
+        firstValueLine = valueLine;
+        firstValueColumn = valueColumn;
+        firstValue = false;
+      }
+      if (c == 'P') {
+        addPlayer(records, size - recordStart[records], valueLine, valueColumn);
+      }
+      if (size == codes.length) {
+        codes = Arrays.copyOf(codes, size * 2);
+      }
+      codes[size++] = decode(c);
+
+      if (pos < limit && in.get(pos) == ',') {
+        ++pos;
+      } else {
+        endLine();
+        break;
+      }
+    }
+    recordStart[++records] = size;
+  }
+
+  private static byte decode(int c) {
+    switch (c) {
+      case '#':
+      case 'W':
+        return SquareTypes.WALL;
+      case 'T':
+        return SquareTypes.TREASURE;
+      case 'w':
+        return SquareTypes.WATER;
+      case 'B':
+        return SquareTypes.BUSHES;
+      case 't':
+        return SquareTypes.TREES;
+      case 'M':
+        return SquareTypes.MOUNTAIN;
+      case 'L':
+        return SquareTypes.LAVA;
+      case 'm':
+        return SquareTypes.MUD;
+      case 'P':
+        return PLAYER;
+      default:
+        return SquareTypes.SPACE;
+    }
+  }
+
+  private void addPlayer(int record, int column, int fileLine, int fileColumn) {
+    if (4 * playerCount == players.length) {
+      players = Arrays.copyOf(players, players.length * 2);
+    }
+    players[4 * playerCount] = record;
+    players[4 * playerCount + 1] = column;
+    players[4 * playerCount + 2] = fileLine;
+    players[4 * playerCount + 3] = fileColumn;
+    ++playerCount;
+  }
+
+  private int readMaxSteps() {
+    byte[] value = new byte[firstValueEnd - firstValueStart];
+    for (int i = 0; i < value.length; ++i) {
+      value[i] = in.get(firstValueStart + i);
+    }
+    String text = new String(value, StandardCharsets.US_ASCII).trim();
+    try {
+      return Integer.parseInt(text);
+    } catch (NumberFormatException e) {
+      throw new BoardFormatException(file, firstValueLine, firstValueColumn,
+          "Expected the maximum number of steps on the last line, got \"" + text + "\"");
+    }
+  }
+
+  private boolean isDelimiter(byte b) {
+    return b == ',' || b == '\r' || b == '\n';
+  }
+
+  private void skipValue() {
+    while (pos < limit && !isDelimiter(in.get(pos))) {
+      ++pos;
+    }
+  }
+
+  // Steps over the end of a line, if there is one
+  private void endLine() {
+    if (pos < limit && in.get(pos) == '\r') {
+      ++pos;
+    }
+    if (pos < limit && in.get(pos) == '\n') {
+      ++pos;
+    }
+    ++line;
+    lineStart = pos;
+  }
+}
@@ -0,0 +1,143 @@
+/**
+ * (C) Copyright IBM Corp. 2016,2022. All Rights Reserved. US Government Users Restricted Rights - Use,
+ * duplication or disclosure restricted by GSA ADP Schedule Contract with IBM Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.vie.mazerunner;
+
+/**
+ * A fixed length array of ints that can be copied in constant time.
+ *
+ * The values are kept in the leaves of a 32-way tree. Every node remembers which array created
+ * it, and an array only writes in place to nodes it owns. Taking a {@link #snapshot()} gives the
+ * copy a new identity and marks this array as shared; its next write takes a new identity too, so
+ * all existing nodes become shared and read-only. A later write copies just the path from the root
+ * to the leaf it changes.
+ *
+ * Any number of threads can take snapshots of an array at once, as that only ever sets the shared
+ * mark. Writing to an array while another thread takes a snapshot of it is not supported.
+ */
+final class CowIntArray {
+  private static final int BITS = 5;
+  private static final int BRANCH = 1 << BITS;
+  private static final int MASK = BRANCH - 1;
+
+  private static final class Node {
+    final Object owner;
+    final Node[] children;
+    final int[] values;
+
+    Node(Object owner, Node[] children, int[] values) {
+      this.owner = owner;
+      this.children = children;
+      this.values = values;
+    }
+
+    Node copy(Object newOwner) {
+      return new Node(newOwner, children != null ? children.clone() : null,
+          values != null ? values.clone() : null);
+    }
+  }
+
+  private final int length;
+  private final int shift;
+  private Node root;
+  private Object owner;
+  // Set when a snapshot shares the nodes; only the writing thread clears it
+  private volatile boolean shared;
+
+  /**
+   * Creates an array of zeros.
+   *
+   * @param length the number of values
+   */
+  CowIntArray(int length) {
+    this.length = length;
+    this.owner = new Object();
+
+    int levels = 0;
+    for (long capacity = BRANCH; capacity < length; capacity *= BRANCH) {
+      ++levels;
+    }
+    this.shift = levels * BITS;
+    this.root = build(shift, 0);
+  }
+
+  private CowIntArray(CowIntArray other) {
+    this.length = other.length;
+    this.shift = other.shift;
+    this.root = other.root;
+    this.owner = new Object();
+  }
+
+  private Node build(int level, int firstIndex) {
+    if (level == 0) {
+      return new Node(owner, null, new int[BRANCH]);
+    }
+    Node[] children = new Node[BRANCH];
+    int span = 1 << level;
+    for (int i = 0; i < BRANCH && firstIndex + i * span < length; ++i) {
+      children[i] = build(level - BITS, firstIndex + i * span);
+    }
+    return new Node(owner, children, null);
+  }
+
+  int length() {
+    return length;
+  }
+
+  int get(int index) {
+    if (index < 0 || index >= length) {
+      throw new ArrayIndexOutOfBoundsException(index);
+    }
+    Node node = root;
+    for (int level = shift; level > 0; level -= BITS) {
+      node = node.children[(index >>> level) & MASK];
+    }
+    return node.values[index & MASK];
+  }
+
+  void set(int index, int value) {
+    if (index < 0 || index >= length) {
+      throw new ArrayIndexOutOfBoundsException(index);
+    }
+    if (shared) {
+      owner = new Object();
+      shared = false;
+    }
+    root = editable(root);
+    Node node = root;
+    for (int level = shift; level > 0; level -= BITS) {
+      int slot = (index >>> level) & MASK;
+      Node child = editable(node.children[slot]);
+      node.children[slot] = child;
+      node = child;
+    }
+    node.values[index & MASK] = value;
+  }
+
+  private Node editable(Node node) {
+    return node.owner == owner ? node : node.copy(owner);
+  }
+
+  /**
+   * Returns a copy of this array. This is O(1); the copy and this array share every node until one
+   * of them writes to it.
+   *
+   * @return an independent copy of this array
+   */
+  CowIntArray snapshot() {
+    shared = true;
+    return new CowIntArray(this);
+  }
+}
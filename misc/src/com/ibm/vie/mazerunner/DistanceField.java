@@ -0,0 +1,356 @@
+/**
+ * (C) Copyright IBM Corp. 2016,2022. All Rights Reserved. US Government Users Restricted Rights - Use,
+ * duplication or disclosure restricted by GSA ADP Schedule Contract with IBM Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.vie.mazerunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import com.ibm.vie.mazerunner.squares.SquareTypes;
+
+/**
+ * The cheapest number of steps from the starting location and from each treasure of a board to
+ * every square. A distance is the sum of the step costs of the squares entered, which is what
+ * {@link IAnalysisBoard#move(Move)} takes off the remaining steps. Paths never go through walls.
+ *
+ * A field describes the board as it was loaded, so every copy of a board has the same one, whatever
+ * the copy has collected since. Fields are immutable and can be used from any number of threads.
+ * The distances from each source are worked out the first time they are asked for.
+ *
+ * Get one from {@link DistanceFieldCache#get(IBoard)}.
+ */
+public final class DistanceField {
+  /**
+   * The distance to a square that cannot be reached without going through a wall.
+   */
+  public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+  private final String contentHash;
+  private final int width, height;
+  private final int maxSteps;
+  // Step cost of each cell, UNREACHABLE for walls
+  private final int[] cost;
+  // The starting location, then the treasures in row order
+  private final int[] sources;
+  private final List<Location> sourceLocations;
+  private final Map<Integer, Integer> sourceOf = new HashMap<>();
+
+  private final AtomicReferenceArray<int[]> fields;
+  // Distances between the sources, by their index in sources
+  private volatile int[][] between;
+  // Told about them once they are worked out, see whenBetweenWorkedOut
+  private final AtomicReference<Consumer<int[][]>> betweenAction = new AtomicReference<>();
+  private volatile int scoreBound = -1;
+
+  DistanceField(MapBoard board) {
+    this(board, null);
+  }
+
+  /**
+   * A field for a board whose distances between the sources are already known, for example from
+   * {@link BoardCache}.
+   */
+  DistanceField(MapBoard board, int[][] between) {
+    contentHash = board.getContentHash();
+    width = board.getWidth();
+    height = board.getHeight();
+    maxSteps = board.getMaxSteps();
+
+    byte[] terrain = board.getTerrainCodes();
+    cost = new int[terrain.length];
+    List<Integer> cells = new ArrayList<>();
+    Location start = board.getStartingLocation();
+    cells.add(start.getRow() * width + start.getCol());
+    for (int i = 0; i < terrain.length; ++i) {
+      cost[i] =
+          (terrain[i] == SquareTypes.WALL) ? UNREACHABLE : SquareTypes.getStepCost(terrain[i]);
+      if (terrain[i] == SquareTypes.TREASURE) {
+        cells.add(i);
+      }
+    }
+
+    sources = new int[cells.size()];
+    List<Location> locations = new ArrayList<>(sources.length);
+    for (int i = 0; i < sources.length; ++i) {
+      sources[i] = cells.get(i);
+      locations.add(new Location(sources[i] / width, sources[i] % width));
+      sourceOf.putIfAbsent(sources[i], i);
+    }
+    sourceLocations = Collections.unmodifiableList(locations);
+    fields = new AtomicReferenceArray<>(sources.length);
+    if (between != null && between.length != sources.length) {
+      throw new IllegalArgumentException(
+          "Expected distances between " + sources.length + " sources, got " + between.length);
+    }
+    this.between = between;
+  }
+
+  /**
+   * @return the hash of the board layout this field was made for
+   */
+  public String getContentHash() {
+    return contentHash;
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * @return the locations distances are measured from: the starting location, then every treasure
+   *         the board was loaded with, row by row
+   */
+  public List<Location> getSources() {
+    return sourceLocations;
+  }
+
+  /**
+   * Gets the cheapest number of steps between two squares.
+   *
+   * @param source One of {@link #getSources()}
+   * @param target Any square of the board
+   * @return the steps, or {@link #UNREACHABLE}
+   * @throws IllegalArgumentException if source is not one of the sources
+   */
+  public int getDistance(Location source, Location target) {
+    return field(source)[target.getRow() * width + target.getCol()];
+  }
+
+  /**
+   * Gets the cheapest number of steps from a source to every square.
+   *
+   * @param source One of {@link #getSources()}
+   * @return a new array with the steps to the square at {@code (row, col)} at
+   *         {@code row * getWidth() + col}, {@link #UNREACHABLE} for squares that cannot be reached
+   * @throws IllegalArgumentException if source is not one of the sources
+   */
+  public int[] getDistances(Location source) {
+    return field(source).clone();
+  }
+
+  /**
+   * Gets the cheapest number of steps between every two sources, without keeping the distances to
+   * the rest of the board.
+   *
+   * @return a new table with the steps from {@code getSources().get(i)} to
+   *         {@code getSources().get(j)} at {@code [i][j]}, {@link #UNREACHABLE} if it cannot be
+   *         reached
+   */
+  public int[][] getSourceDistances() {
+    int[][] table = between();
+    int[][] copy = new int[table.length][];
+    for (int i = 0; i < table.length; ++i) {
+      copy[i] = table[i].clone();
+    }
+    return copy;
+  }
+
+  /**
+   * Gets a score no player can beat on this board. It assumes the player walks a path as short as
+   * the minimum spanning tree of the starting location and the treasures, which no path that visits
+   * them all can be.
+   *
+   * @return the highest score the board could give
+   */
+  public int getScoreBound() {
+    if (scoreBound < 0) {
+      scoreBound = computeScoreBound();
+    }
+    return scoreBound;
+  }
+
+  private int[] field(Location source) {
+    Integer i = sourceOf.get(source.getRow() * width + source.getCol());
+    if (i == null) {
+      throw new IllegalArgumentException(source + " is not the start or a treasure of the board");
+    }
+    return field(i);
+  }
+
+  private int[] field(int i) {
+    int[] field = fields.get(i);
+    if (field == null) {
+      // Two threads may both work it out; either result will do
+      fields.compareAndSet(i, null, dijkstra(sources[i]));
+      field = fields.get(i);
+    }
+    return field;
+  }
+
+  /**
+   * The distances between the sources, shared with the field; never modify them.
+   */
+  int[][] between() {
+    if (between == null) {
+      // Two threads may both work them out; either result will do
+      int n = sources.length;
+      int[][] table = new int[n][n];
+      for (int i = 0; i < n; ++i) {
+        // Uses the fields worked out already, without keeping the others
+        int[] field = fields.get(i);
+        if (field == null) {
+          field = dijkstra(sources[i]);
+        }
+        for (int j = 0; j < n; ++j) {
+          table[i][j] = field[sources[j]];
+        }
+      }
+      between = table;
+      runBetweenAction(table);
+    }
+    return between;
+  }
+
+  /**
+   * Passes the distances between the sources to an action once they are worked out, or right away
+   * if they already are. The action runs once, on the thread that works them out; a later call
+   * replaces an action that has not run yet.
+   */
+  void whenBetweenWorkedOut(Consumer<int[][]> action) {
+    betweenAction.set(action);
+    int[][] table = between;
+    if (table != null) {
+      runBetweenAction(table);
+    }
+  }
+
+  private void runBetweenAction(int[][] table) {
+    Consumer<int[][]> action = betweenAction.getAndSet(null);
+    if (action != null) {
+      action.accept(table);
+    }
+  }
+
+  private int computeScoreBound() {
+    int n = sources.length;
+    int treasures = n - 1;
+    int[][] between = between();
+
+    // Prim's algorithm over the sources reachable from the start. An edge may be walked either way,
+    // so it costs the cheaper of the two directions.
+    int[] key = new int[n];
+    boolean[] inTree = new boolean[n];
+    Arrays.fill(key, UNREACHABLE);
+    key[0] = 0;
+    long total = 0;
+    int reached = 0;
+    for (int round = 0; round < n; ++round) {
+      int next = -1;
+      for (int i = 0; i < n; ++i) {
+        if (!inTree[i] && key[i] != UNREACHABLE && (next < 0 || key[i] < key[next])) {
+          next = i;
+        }
+      }
+      if (next < 0) {
+        break;
+      }
+      inTree[next] = true;
+      total += key[next];
+      ++reached;
+      for (int i = 0; i < n; ++i) {
+        if (!inTree[i]) {
+          key[i] = Math.min(key[i], Math.min(between[next][i], between[i][next]));
+        }
+      }
+    }
+
+    if (reached < n) {
+      // Some treasures cannot be reached at all
+      return (reached - 1) * 100;
+    }
+    // Entering the last treasure only needs one step left
+    int lastStep = SquareTypes.getStepCost(SquareTypes.TREASURE);
+    if (total - lastStep >= maxSteps) {
+      return (treasures - 1) * 100;
+    }
+    return (int) Math.max(0, maxSteps - total) + treasures * 100 + 500;
+  }
+
+  // Dijkstra's algorithm from one cell. The open set is a binary heap of (distance, cell) pairs
+  // packed into longs; entries made stale by a shorter distance are skipped.
+  private int[] dijkstra(int start) {
+    int[] distance = new int[cost.length];
+    Arrays.fill(distance, UNREACHABLE);
+    long[] heap = new long[64];
+    int size = 0;
+
+    distance[start] = 0;
+    heap[size++] = start;
+    while (size > 0) {
+      long top = heap[0];
+      long last = heap[--size];
+      int i = 0;
+      while (2 * i + 1 < size) {
+        int child = 2 * i + 1;
+        if (child + 1 < size && heap[child + 1] < heap[child]) {
+          ++child;
+        }
+        if (heap[child] >= last) {
+          break;
+        }
+        heap[i] = heap[child];
+        i = child;
+      }
+      heap[i] = last;
+
+      int c = (int) top;
+      int d = (int) (top >>> 32);
+      if (d > distance[c]) {
+        continue;
+      }
+      int row = c / width;
+      int col = c - row * width;
+      for (int n = 0; n < 4; ++n) {
+        int next;
+        if (n == 0 && row > 0) {
+          next = c - width;
+        } else if (n == 1 && row < height - 1) {
+          next = c + width;
+        } else if (n == 2 && col > 0) {
+          next = c - 1;
+        } else if (n == 3 && col < width - 1) {
+          next = c + 1;
+        } else {
+          continue;
+        }
+        if (cost[next] == UNREACHABLE || d + cost[next] >= distance[next]) {
+          continue;
+        }
+        distance[next] = d + cost[next];
+        if (size == heap.length) {
+          heap = Arrays.copyOf(heap, size * 2);
+        }
+        long entry = ((long) distance[next] << 32) | next;
+        int j = size++;
+        while (j > 0 && heap[(j - 1) / 2] > entry) {
+          heap[j] = heap[(j - 1) / 2];
+          j = (j - 1) / 2;
+        }
+        heap[j] = entry;
+      }
+    }
+    return distance;
+  }
+}
@@ -0,0 +1,114 @@
+/**
+ * (C) Copyright IBM Corp. 2016,2022. All Rights Reserved. US Government Users Restricted Rights - Use,
+ * duplication or disclosure restricted by GSA ADP Schedule Contract with IBM Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.vie.mazerunner;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the {@link DistanceField} of the boards used most recently, so that every player, game and
+ * screen that asks about the same board shares one. Boards are matched by the hash of their layout
+ * ({@link MapBoard#getContentHash()}), so a board loaded twice from the same file is found too.
+ *
+ * The cache can be used from any number of threads. When it is full, the board used least recently
+ * is dropped.
+ */
+public final class DistanceFieldCache {
+  public static final int DEFAULT_CAPACITY = 64;
+
+  private static final DistanceFieldCache instance = new DistanceFieldCache();
+
+  private int capacity = DEFAULT_CAPACITY;
+  private final LinkedHashMap<String, DistanceField> fields =
+      new LinkedHashMap<String, DistanceField>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, DistanceField> eldest) {
+          return size() > capacity;
+        }
+      };
+
+  private DistanceFieldCache() {}
+
+  public static DistanceFieldCache getInstance() {
+    return instance;
+  }
+
+  /**
+   * Gets the distance field of a board, making one if the cache does not have it yet. Making one is
+   * quick; the distances themselves are only worked out when they are asked for.
+   *
+   * @param board A board from the game engine, or a view of one
+   * @return the board's distance field
+   * @throws IllegalArgumentException if the board did not come from the game engine
+   */
+  public DistanceField get(IBoard board) {
+    while (board instanceof MapBoardView) {
+      board = ((MapBoardView) board).getBoard();
+    }
+    if (!(board instanceof MapBoard)) {
+      throw new IllegalArgumentException("Not a board from the game engine: " + board);
+    }
+    MapBoard mapBoard = (MapBoard) board;
+    String hash = mapBoard.getContentHash();
+    synchronized (fields) {
+      return fields.computeIfAbsent(hash, h -> new DistanceField(mapBoard));
+    }
+  }
+
+  /**
+   * Gets the distance field of a board, making one that starts from already known distances between
+   * its sources if the cache does not have it yet.
+   */
+  DistanceField get(MapBoard board, int[][] between) {
+    synchronized (fields) {
+      return fields.computeIfAbsent(board.getContentHash(), h -> new DistanceField(board, between));
+    }
+  }
+
+  /**
+   * Sets how many boards the cache keeps, dropping the least recently used ones if it has more.
+   *
+   * @param capacity The number of boards, at least 1
+   */
+  public void setCapacity(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("The capacity must be at least 1: " + capacity);
+    }
+    synchronized (fields) {
+      this.capacity = capacity;
+      while (fields.size() > capacity) {
+        fields.remove(fields.keySet().iterator().next());
+      }
+    }
+  }
+
+  /**
+   * @return the number of boards in the cache
+   */
+  public int size() {
+    synchronized (fields) {
+      return fields.size();
+    }
+  }
+
+  public void clear() {
+    synchronized (fields) {
+      fields.clear();
+    }
+  }
+}
@@ -15,28 +15,31 @@
 
 package com.ibm.vie.mazerunner;
 
-import java.io.IOException;
-import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.LinkedHashSet;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
-import java.util.Random;
-import java.util.Set;
-import java.util.Stack;
-import com.csvreader.CsvReader;
-import com.ibm.vie.mazerunner.squares.Bushes;
+import java.util.SplittableRandom;
 import com.ibm.vie.mazerunner.squares.ISquare;
-import com.ibm.vie.mazerunner.squares.Lava;
-import com.ibm.vie.mazerunner.squares.Mountain;
-import com.ibm.vie.mazerunner.squares.Mud;
-import com.ibm.vie.mazerunner.squares.Space;
+import com.ibm.vie.mazerunner.squares.SquareTypes;
 import com.ibm.vie.mazerunner.squares.Treasure;
-import com.ibm.vie.mazerunner.squares.Trees;
-import com.ibm.vie.mazerunner.squares.Wall;
-import com.ibm.vie.mazerunner.squares.Water;
 
+/**
+ * The game engine's board. The map is kept as flat arrays indexed by {@code row * width + col}: one
+ * {@link SquareTypes} code and one step count per cell, plus a bit per cell that still holds a
+ * treasure. {@link ISquare} objects are only created when {@link #getSquareAt(Location)} asks for
+ * one, and reflect the state of the cell at that time.
+ *
+ * Copying a board with {@link #MapBoard(MapBoard)} is O(1). The copy shares the terrain, the step
+ * counts, the treasures and the move history with the original; the step counts are a
+ * {@link CowIntArray} and the treasure bits are copied the first time either board collects a
+ * treasure, so each board only pays for the cells it changes. Any number of threads can copy the
+ * same board at once, as long as none of them changes it meanwhile.
+ */
 public class MapBoard implements IAnalysisBoard {
 
   private String name;
@@ -44,15 +47,35 @@ public class MapBoard implements IAnalysisBoard {
   private int maxSteps;
   private int remainingSteps;
 
-  private ISquare[][] boardState;
+  // The terrain never changes once the board is built, so copies share it
+  private byte[] terrain;
+  private CowIntArray stepCounts;
+  private BitSet treasureCells;
+  // Set by every copy that shares treasureCells; only this board clears it, when it collects one
+  private volatile boolean treasureCellsShared;
 
   private Location playerLocation;
   private Location startingLocation;
 
-  private List<Treasure> treasures;
+  private int treasureCount;
   private int initialTreasureCount;
+  private List<Treasure> treasures;
 
-  private Stack<Move> moveHistory;
+  // Bread crumbs for BACKTRACK, newest first. Never modified, so copies share it.
+  private MoveHistory moveHistory;
+
+  // Hash of the layout, worked out when first asked for
+  private String contentHash;
+
+  private static final class MoveHistory {
+    final Move move;
+    final MoveHistory previous;
+
+    MoveHistory(Move move, MoveHistory previous) {
+      this.move = move;
+      this.previous = previous;
+    }
+  }
 
   private MapBoard(String boardName, int w, int h, int max) {
     name = boardName;
@@ -60,10 +83,11 @@ public class MapBoard implements IAnalysisBoard {
     height = h;
     remainingSteps = maxSteps = max;
 
-    moveHistory = new Stack<>();
-    treasures = new ArrayList<>();
+    moveHistory = null;
 
-    boardState = new ISquare[height][width];
+    terrain = new byte[width * height];
+    stepCounts = new CowIntArray(width * height);
+    treasureCells = new BitSet(width * height);
   }
 
 
@@ -73,121 +97,154 @@ public class MapBoard implements IAnalysisBoard {
   }
 
   public MapBoard(MapBoard otherBoard) {
-    this(otherBoard.name, otherBoard.width, otherBoard.height, otherBoard.maxSteps);
+    name = otherBoard.name;
+    width = otherBoard.width;
+    height = otherBoard.height;
+    maxSteps = otherBoard.maxSteps;
 
     playerLocation = otherBoard.playerLocation;
     startingLocation = otherBoard.startingLocation;
     this.remainingSteps = otherBoard.remainingSteps;
-    this.moveHistory = new Stack<>();
-    this.moveHistory.addAll(otherBoard.moveHistory);
-
-    for (int j = 0; j < height; ++j) {
-      for (int i = 0; i < width; ++i) {
-        boardState[j][i] = otherBoard.boardState[j][i].duplicate();
-        if (boardState[j][i] instanceof Treasure) {
-          Treasure t = (Treasure) boardState[j][i];
-          if (t.spaceHasTreasure()) {
-            treasures.add(t);
-          }
-        }
-      }
-    }
+    this.moveHistory = otherBoard.moveHistory;
+
+    terrain = otherBoard.terrain;
+    stepCounts = otherBoard.stepCounts.snapshot();
+    treasureCells = otherBoard.treasureCells;
+    treasureCellsShared = true;
+    // The only write to the other board, the same from every copy, so copies can be made at once
+    otherBoard.treasureCellsShared = true;
+    treasureCount = otherBoard.treasureCount;
     initialTreasureCount = otherBoard.initialTreasureCount;
+    contentHash = otherBoard.contentHash;
   }
 
+  /**
+   * Loads a board file. It has a line of comma-separated squares for each row of the board, and a
+   * last line whose first value is the maximum number of steps.
+   *
+   * @param boardConfig The path of the file
+   * @return the board, named after the file
+   * @throws BoardFormatException if the file does not hold a valid board
+   */
   public static MapBoard parseBoard(String boardConfig) {
-    try {
-      CsvReader csvr = new CsvReader(boardConfig);
-
-      int w = 0;
-      int h = 0;
-      int max_steps = 100;
-
-      List<String[]> records = new ArrayList<>();
-
-      // Pre-scan
-      boolean hasMore = csvr.readRecord();
-      String[] vals;
-      while (hasMore) {
-        vals = csvr.getValues();
-        hasMore = csvr.readRecord();
-        if (hasMore) {
-          // Not the last record, this is map data.
-          w = Math.max(w, csvr.getColumnCount());
-          records.add(vals);
-        } else {
-          // This was the last record, lets pull meta data from it
-          if (vals.length > 0) {
-            max_steps = Integer.parseInt(vals[0]);
-          }
-        }
+    return BoardParser.parse(boardConfig);
+  }
+
+  /**
+   * Loads a binary board file, see {@link BinaryBoardFormat}.
+   *
+   * @param boardFile The path of the file
+   * @return the board, named after the file
+   * @throws BoardFormatException if the file does not hold a valid board
+   */
+  public static MapBoard readBinaryBoard(String boardFile) {
+    return BinaryBoardFormat.read(boardFile);
+  }
+
+  /**
+   * Loads a board file of either format: a binary board file if it has the
+   * {@link BinaryBoardFormat#EXTENSION} extension, a comma-separated one otherwise.
+   *
+   * @param boardFile The path of the file
+   * @return the board, named after the file
+   * @throws BoardFormatException if the file does not hold a valid board
+   */
+  public static MapBoard loadBoard(String boardFile) {
+    return BinaryBoardFormat.isBinaryBoard(boardFile) ? readBinaryBoard(boardFile)
+        : parseBoard(boardFile);
+  }
+
+  /**
+   * Builds a board from the layout {@link #parseBoard(String)} made of a file, without reading the
+   * file again.
+   *
+   * @param terrain The {@link SquareTypes} code of every cell, indexed by {@code row * w + col};
+   *        the board keeps it
+   * @param treasureCells The indexes of the treasure cells in terrain
+   */
+  static MapBoard fromLayout(String boardName, int w, int h, int max, Location start,
+      byte[] terrain, int[] treasureCells) {
+    if (terrain.length != w * h) {
+      throw new IllegalArgumentException(
+          "Expected " + w * h + " squares for a " + w + "x" + h + " board, got " + terrain.length);
+    }
+    MapBoard board = new MapBoard(boardName, w, h, max);
+    board.terrain = terrain;
+    for (int idx : treasureCells) {
+      if (terrain[idx] != SquareTypes.TREASURE) {
+        throw new IllegalArgumentException("Square " + idx + " does not hold a treasure");
       }
-      h = records.size();
-
-      String boardName = new java.io.File(boardConfig).getName();
-      MapBoard board = new MapBoard(boardName, w, h, max_steps);
-
-      // Process the data
-      char c;
-      for (int j = 0; j < h; ++j) {
-        vals = records.get(j);
-        for (int i = 0; i < w; ++i) {
-          if (j == 0 || j == h - 1 || i == 0 || i == w - 1) { // Bounding square, always walls
-            board.boardState[j][i] = new Wall(j, i);
-          } else if (i < vals.length && vals[i].length() > 0) {
-            c = vals[i].charAt(0);
-            switch (c) {
-              case '#':
-              case 'W':
-                board.boardState[j][i] = new Wall(j, i);
-                break;
-              case 'T':
-                board.treasures.add((Treasure) (board.boardState[j][i] = new Treasure(j, i)));
-                break;
-              case 'w':
-                board.boardState[j][i] = new Water(j, i);
-                break;
-              case 'B':
-                board.boardState[j][i] = new Bushes(j, i);
-                break;
-              case 't':
-                board.boardState[j][i] = new Trees(j, i);
-                break;
-              case 'M':
-                board.boardState[j][i] = new Mountain(j, i);
-                break;
-              case 'L':
-                board.boardState[j][i] = new Lava(j, i);
-                break;
-              case 'm':
-                board.boardState[j][i] = new Mud(j, i);
-                break;
-              case 'P':
-                board.playerLocation = new Location(j, i);
-                board.boardState[j][i] = Space.createPlayerStartSpace(j, i);
-                board.startingLocation = new Location(j, i);
-                break;
-              default:
-                board.boardState[j][i] = new Space(j, i);
-            }
-          } else {
-            board.boardState[j][i] = new Space(j, i);
-          }
+      board.treasureCells.set(idx);
+    }
+    board.treasureCount = board.initialTreasureCount = treasureCells.length;
+    board.playerLocation = board.startingLocation = start;
+    board.stepCounts.set(board.indexOf(start.getRow(), start.getCol()), 1);
+    return board;
+  }
+
+  /**
+   * Identifies the layout of the board: its size, maximum steps, starting location and the squares
+   * it was loaded with. Boards with the same layout have the same hash, and copies of a board keep
+   * it whatever they have collected.
+   *
+   * @return the SHA-256 hash of the layout, in hexadecimal
+   */
+  public String getContentHash() {
+    if (contentHash == null) {
+      try {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update(ByteBuffer.allocate(20).putInt(width).putInt(height).putInt(maxSteps)
+            .putInt(startingLocation.getRow()).putInt(startingLocation.getCol()).array());
+        digest.update(terrain);
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+          hex.append(String.format("%02x", b));
         }
+        contentHash = hex.toString();
+      } catch (NoSuchAlgorithmException e) {
+        throw new IllegalStateException("Every JVM has SHA-256", e);
       }
+    }
+    return contentHash;
+  }
 
-      if (board.playerLocation == null) {
-        throw new RuntimeException("Invalid board: missing [P]layer space");
-      }
+  /**
+   * The {@link SquareTypes} code of every cell, indexed by {@code row * width + col}. Shared with
+   * the board; never modify it.
+   */
+  byte[] getTerrainCodes() {
+    return terrain;
+  }
 
-      if (board.treasures.size() == 0) {
-        throw new RuntimeException("Invalid board: At least one [T]reasure space is required.");
-      }
+  /**
+   * @return the indexes of the cells that still hold a treasure, in row order
+   */
+  int[] getTreasureCells() {
+    return treasureCells.stream().toArray();
+  }
+
+  private int indexOf(int row, int col) {
+    return row * width + col;
+  }
 
-      board.initialTreasureCount = board.treasures.size();
-      return board;
-    } catch (IOException e) {
-      throw new UncheckedIOException(e);
+  private void setTerrain(int row, int col, byte code) {
+    int idx = indexOf(row, col);
+    terrain[idx] = code;
+    if (code == SquareTypes.TREASURE) {
+      treasureCells.set(idx);
+      ++treasureCount;
+    }
+  }
+
+  private void collectTreasure(int idx) {
+    if (treasureCells.get(idx)) {
+      if (treasureCellsShared) {
+        treasureCells = (BitSet) treasureCells.clone();
+        treasureCellsShared = false;
+      }
+      treasureCells.clear(idx);
+      --treasureCount;
+      treasures = null;
     }
   }
 
@@ -196,55 +253,54 @@ public class MapBoard implements IAnalysisBoard {
 
     if (isComplete()) {
       throw new RuntimeException("Cannot move, this board is complete. Remaining Treasures = "
-          + treasures.size() + ", remaining steps = " + getRemainingSteps());
+          + treasureCount + ", remaining steps = " + getRemainingSteps());
     }
 
     if (mv == Move.BACKTRACK) {
-      if (moveHistory.size() == 0) {
+      if (moveHistory == null) {
         throw new IllegalBackTrackException();
       }
-      mv = moveHistory.pop().inverse()
+      mv = moveHistory.move.inverse()
           .orElseThrow(() -> new UnsupportedOperationException("Move in history had no inverse!"));
+      moveHistory = moveHistory.previous;
     } else {
-      moveHistory.push(mv);
+      moveHistory = new MoveHistory(mv, moveHistory);
     }
 
+    // Every board move lands next to the player, so it is always a legal move
     Location np = mv.apply(playerLocation);
+    int idx = indexOf(np.getRow(), np.getCol());
 
-    ISquare dest = getSquareAt(np);
-    remainingSteps -= dest.getStepCost();
+    remainingSteps -= SquareTypes.getStepCost(terrain[idx]);
 
     if (remainingSteps < 0) {
       remainingSteps = 0;
     }
 
-    // Returns true if the move is legal
-    if (dest.moveTo(this)) {
-      playerLocation = dest.getLocation();
-    } else {
-      moveHistory.pop(); // unrecord a dead move
-      throw new RuntimeException("Illegal " + mv + " to " + dest + " from " + playerLocation);
-    }
+    stepCounts.set(idx, stepCounts.get(idx) + 1);
+    collectTreasure(idx);
+    playerLocation = np;
   }
 
-  private boolean isSquareUnexplored(ISquare spc) {
-    return spc.isValidMove(this) && spc.getStepCount() == 0;
+  private boolean isSquareUnexplored(Move mv) {
+    Location l = mv.apply(playerLocation);
+    return stepCounts.get(indexOf(l.getRow(), l.getCol())) == 0;
   }
 
   @Override
   public List<Move> getUnexploredMoves() {
     List<Move> moves = new ArrayList<>(4);
 
-    if (isSquareUnexplored(getSquareAt(Move.NORTH.apply(playerLocation)))) {
+    if (isSquareUnexplored(Move.NORTH)) {
       moves.add(Move.NORTH);
     }
-    if (isSquareUnexplored(getSquareAt(Move.SOUTH.apply(playerLocation)))) {
+    if (isSquareUnexplored(Move.SOUTH)) {
       moves.add(Move.SOUTH);
     }
-    if (isSquareUnexplored(getSquareAt(Move.EAST.apply(playerLocation)))) {
+    if (isSquareUnexplored(Move.EAST)) {
       moves.add(Move.EAST);
     }
-    if (isSquareUnexplored(getSquareAt(Move.WEST.apply(playerLocation)))) {
+    if (isSquareUnexplored(Move.WEST)) {
       moves.add(Move.WEST);
     }
 
@@ -262,28 +318,42 @@ public class MapBoard implements IAnalysisBoard {
   }
 
   public void removeTreasure(Treasure t) {
-    treasures.remove(t);
+    collectTreasure(indexOf(t.getLocation().getRow(), t.getLocation().getCol()));
   }
 
   @Override
   public List<Treasure> getTreasures() {
+    if (treasures == null) {
+      List<Treasure> remaining = new ArrayList<>(treasureCount);
+      int idx = treasureCells.nextSetBit(0);
+      while (idx >= 0) {
+        remaining.add((Treasure) getSquareAt(idx / width, idx % width));
+        idx = treasureCells.nextSetBit(idx + 1);
+      }
+      treasures = Collections.unmodifiableList(remaining);
+    }
     return treasures; // return unmodifiable list so the player cannot manipulate it
   }
 
-  // Count up remaining treasures. we're not going to do any mutating of the list.
   @Override
   public int getRemainingTreasureCount() {
-    return treasures.size();
+    return treasureCount;
   }
 
   @Override
   public int getObtainedTreasureCount() {
-    return initialTreasureCount - treasures.size();
+    return initialTreasureCount - treasureCount;
   }
 
   @Override
   public ISquare getSquareAt(Location l) {
-    return boardState[l.getRow()][l.getCol()];
+    return getSquareAt(l.getRow(), l.getCol());
+  }
+
+  private ISquare getSquareAt(int row, int col) {
+    int idx = indexOf(row, col);
+    return SquareTypes.create(terrain[idx], row, col, stepCounts.get(idx),
+        treasureCells.get(idx));
   }
 
   @Override
@@ -320,109 +390,130 @@ public class MapBoard implements IAnalysisBoard {
     }
   }
 
-  private static Set<Location> getAdjacentPoints(Location l, int maxx, int maxy) {
-    Set<Location> result = new HashSet<>();
-
-    if (l.getCol() > 1)
-      result.add(new Location(l.getRow(), l.getCol() - 1));
-    if (l.getCol() < maxx - 2)
-      result.add(new Location(l.getRow(), l.getCol() + 1));
-    if (l.getRow() > 1)
-      result.add(new Location(l.getRow() - 1, l.getCol()));
-    if (l.getRow() < maxy - 2)
-      result.add(new Location(l.getRow() + 1, l.getCol()));
-
-    return result;
-
-  }
-
+  /**
+   * Generates a maze with a randomized version of Prim's algorithm, from a random seed.
+   *
+   * @see #randomizedPrim(String, int, int, int, int, int, int, long)
+   */
   public static IBoard randomizedPrim(String boardName, int width, int height, int treasures,
       int branchFactor, // 100 = max number of branches
       int openFactor, // 100 = empty board
       int max_steps) {
-    Random rnd = new Random();
-
-    MapBoard board = new MapBoard(boardName, width, height, max_steps);
+    return randomizedPrim(boardName, width, height, treasures, branchFactor, openFactor, max_steps,
+        new SplittableRandom().nextLong());
+  }
 
-    // Create points that might be in the maze
-    // These all start as walls
-    List<Location> locs = new LinkedList<>();
-    for (int w = 1; w < width - 1; w++) {
-      for (int h = 1; h < height - 1; h++) {
-        locs.add(new Location(h, w));
-      }
+  /**
+   * Generates a maze with a randomized version of Prim's algorithm. The maze grows from a random
+   * starting location by opening walls next to exactly one open square. The treasures go on the
+   * squares opened last, which tend to be far from the start, and some of the remaining walls are
+   * then opened at random.
+   *
+   * Takes time linear in the number of squares, so very large boards can be made.
+   *
+   * @param branchFactor How likely the maze is to branch, from 0 to 100
+   * @param openFactor The percentage of the remaining walls that are opened, 100 for an empty board
+   * @param seed The same seed and parameters always make the same board
+   * @return the board, with the player on the starting location
+   */
+  public static MapBoard randomizedPrim(String boardName, int width, int height, int treasures,
+      int branchFactor, int openFactor, int max_steps, long seed) {
+    if (width < 3 || height < 3) {
+      throw new IllegalArgumentException("A board is at least 3x3, not " + width + "x" + height);
+    }
+    SplittableRandom rnd = new SplittableRandom(seed);
+    int cells = width * height;
+
+    // Choose a starting point inside the edge walls
+    int startingPoint = (1 + rnd.nextInt(height - 2)) * width + (1 + rnd.nextInt(width - 2));
+
+    // The squares opened so far, in order
+    int[] opened = new int[cells];
+    int openedCount = 0;
+    BitSet open = new BitSet(cells);
+    // The walls that might be opened next. Removing one moves the last one into its place.
+    int[] wallList = new int[cells];
+    int wallCount = 0;
+    BitSet inWallList = new BitSet(cells);
+    int[] adjacent = new int[4];
+
+    opened[openedCount++] = startingPoint;
+    open.set(startingPoint);
+    int count = adjacentPoints(startingPoint, width, height, adjacent);
+    for (int i = 0; i < count; ++i) {
+      wallList[wallCount++] = adjacent[i];
+      inWallList.set(adjacent[i]);
     }
 
-    // choose starting point
-    Location startingPoint = locs.get(rnd.nextInt(locs.size()));
-
-    Set<Location> visitedSquares = new LinkedHashSet<>();
-
-    visitedSquares.add(startingPoint);
-
-    // Initialize the Wall List
-    List<Location> wallList = new LinkedList<>();
-
-    wallList.addAll(getAdjacentPoints(startingPoint, width, height));
-
-    while (wallList.size() > 0) {
+    while (wallCount > 0) {
       // Pick a random wall from the list
-      Location randomWall = wallList.get(rnd.nextInt(wallList.size()));
-      Set<Location> adjacent = getAdjacentPoints(randomWall, width, height);
-
+      int index = rnd.nextInt(wallCount);
+      int randomWall = wallList[index];
+      count = adjacentPoints(randomWall, width, height, adjacent);
 
       int numVisited = 0;
-      for (Location p : adjacent) {
-        if (visitedSquares.contains(p))
+      for (int i = 0; i < count; ++i) {
+        if (open.get(adjacent[i])) {
           numVisited++;
-      }
-
-      if (numVisited == 1
-          && ((wallList.size() <= 4) || (rnd.nextInt(100) > (100 - branchFactor)))) {
-        visitedSquares.add(randomWall);
-        for (Location p : adjacent) {
-          if (!visitedSquares.contains(p) && !wallList.contains(p))
-            wallList.add(p);
         }
       }
 
-      wallList.remove(randomWall);
-
-    }
-
-    // Choose Treasure Squares and starting square
-    Location[] orderedSquares = new Location[visitedSquares.size()];
-    visitedSquares.toArray(orderedSquares);
-
-    board.playerLocation = startingPoint;
-
-    Set<Location> treasureSquares = new HashSet<>();
+      boolean opens = numVisited == 1
+          && ((wallCount <= 4) || (rnd.nextInt(100) > (100 - branchFactor)));
 
+      wallList[index] = wallList[--wallCount];
+      inWallList.clear(randomWall);
 
-    // make sure the treasure is not on the start square
-    int treasureLocation = orderedSquares.length - 1;
-    while ((treasureSquares.size() < treasures) && (treasureLocation > 0)) {
-      if (!orderedSquares[treasureLocation].equals(board.playerLocation))
-        treasureSquares.add(orderedSquares[treasureLocation]);
-      treasureLocation--;
+      if (opens) {
+        opened[openedCount++] = randomWall;
+        open.set(randomWall);
+        for (int i = 0; i < count; ++i) {
+          int p = adjacent[i];
+          if (!open.get(p) && !inWallList.get(p)) {
+            wallList[wallCount++] = p;
+            inWallList.set(p);
+          }
+        }
+      }
     }
 
-
-    for (int w = 0; w < width; w++) {
-      for (int h = 0; h < height; h++) {
-        Location p = new Location(w, h);
-        if (visitedSquares.contains(p) || ((w >= 1 && (h >= 1) && (h < height - 1)
-            && (w < width - 1) && (rnd.nextInt(100) >= (100 - openFactor))))) {
-          if (treasureSquares.contains(p)) {
-            board.boardState[h][w] = new Treasure(p);
-            board.treasures.add((Treasure) board.boardState[h][w]);
-          } else {
-            board.boardState[h][w] = new Space(p);
-          }
-        } else
-          board.boardState[h][w] = new Wall(p);
+    // The treasure goes on the squares opened last; the start was opened first
+    int treasureCount = Math.min(Math.max(treasures, 0), openedCount - 1);
+    int[] treasureCells = new int[treasureCount];
+    byte[] terrain = new byte[cells];
+    for (int i = 0; i < treasureCount; ++i) {
+      treasureCells[i] = opened[openedCount - 1 - i];
+      terrain[treasureCells[i]] = SquareTypes.TREASURE;
+    }
+    Arrays.sort(treasureCells);
+
+    for (int row = 0; row < height; row++) {
+      for (int col = 0; col < width; col++) {
+        int idx = row * width + col;
+        boolean inside = row >= 1 && col >= 1 && row < height - 1 && col < width - 1;
+        if (!open.get(idx) && !(inside && rnd.nextInt(100) >= (100 - openFactor))) {
+          terrain[idx] = SquareTypes.WALL;
+        }
       }
     }
-    return board;
+
+    return fromLayout(boardName, width, height, max_steps,
+        new Location(startingPoint / width, startingPoint % width), terrain, treasureCells);
+  }
+
+  // Fills `adjacent` with the squares next to a square that are inside the edge walls, and returns
+  // how many there are
+  private static int adjacentPoints(int idx, int width, int height, int[] adjacent) {
+    int row = idx / width, col = idx % width;
+    int count = 0;
+    if (col > 1)
+      adjacent[count++] = idx - 1;
+    if (col < width - 2)
+      adjacent[count++] = idx + 1;
+    if (row > 1)
+      adjacent[count++] = idx - width;
+    if (row < height - 2)
+      adjacent[count++] = idx + width;
+    return count;
   }
 }
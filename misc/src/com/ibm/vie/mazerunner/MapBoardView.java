@@ -30,6 +30,10 @@ public class MapBoardView implements IAnalysisBoard {
     this.board = board;
   }
 
+  IBoard getBoard() {
+    return board;
+  }
+
   @Override
   public String getName() {
     return board.getName();
@@ -0,0 +1,170 @@
+/**
+ * (C) Copyright IBM Corp. 2016,2022. All Rights Reserved. US Government Users Restricted Rights - Use,
+ * duplication or disclosure restricted by GSA ADP Schedule Contract with IBM Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.vie.mazerunner;
+
+import java.util.Arrays;
+import com.ibm.vie.mazerunner.squares.SquareTypes;
+
+/**
+ * Lays weighted terrain over the open squares of a board, so that searches can be tried on boards
+ * where steps cost different amounts. Each type of terrain forms clusters about
+ * {@code clusterSize} squares across, shaped by smooth random noise, and covers the given share of
+ * the open squares. Walls, treasures and the starting location are left as they are, so every
+ * treasure that could be reached before can still be reached.
+ */
+public final class TerrainGenerator {
+  /**
+   * The types of terrain, in the order {@link #paint} takes their percentages.
+   */
+  public static final byte[] TYPES = {SquareTypes.WATER, SquareTypes.BUSHES, SquareTypes.TREES,
+      SquareTypes.MOUNTAIN, SquareTypes.LAVA, SquareTypes.MUD};
+
+  /**
+   * The cluster size the command line tools use when none is given.
+   */
+  public static final int DEFAULT_CLUSTER_SIZE = 8;
+
+  // Noise values are sorted into this many levels
+  private static final int LEVELS = 4096;
+
+  private TerrainGenerator() {}
+
+  /**
+   * Makes a copy of a board with terrain laid over its open squares.
+   *
+   * @param board The board, as it was loaded or generated
+   * @param percents The percentage of the open squares each of the {@link #TYPES} covers, in that
+   *        order; at most 100 in all. Missing ones cover nothing.
+   * @param clusterSize About how many squares across a cluster of terrain is, at least 1
+   * @param seed The same seed, board and parameters always lay the same terrain
+   * @return a new board with the same name, size, steps, start and treasures
+   */
+  public static MapBoard paint(MapBoard board, int[] percents, int clusterSize, long seed) {
+    if (percents.length > TYPES.length) {
+      throw new IllegalArgumentException("There are " + TYPES.length + " types of terrain, got "
+          + percents.length + " percentages");
+    }
+    int total = 0;
+    for (int percent : percents) {
+      if (percent < 0) {
+        throw new IllegalArgumentException("Negative percentage " + percent);
+      }
+      total += percent;
+    }
+    if (total > 100) {
+      throw new IllegalArgumentException("The percentages add up to " + total + ", more than 100");
+    }
+    if (clusterSize < 1) {
+      throw new IllegalArgumentException("The cluster size must be at least 1: " + clusterSize);
+    }
+
+    int width = board.getWidth();
+    int height = board.getHeight();
+    byte[] terrain = board.getTerrainCodes().clone();
+    Location start = board.getStartingLocation();
+    int startIdx = start.getRow() * width + start.getCol();
+
+    // The squares terrain can go on
+    int[] open = new int[terrain.length];
+    int openCount = 0;
+    for (int i = 0; i < terrain.length; ++i) {
+      if (terrain[i] == SquareTypes.SPACE && i != startIdx) {
+        open[openCount++] = i;
+      }
+    }
+    // Percentages are of all the open squares, not of those left
+    int openTotal = openCount;
+
+    int[] level = new int[terrain.length];
+    int[] levelCount = new int[LEVELS];
+    for (int t = 0; t < percents.length; ++t) {
+      int wanted = (int) ((long) openTotal * percents[t] / 100);
+      if (wanted == 0) {
+        continue;
+      }
+
+      // Cover the squares where this type's noise is highest: count the open squares at each
+      // level, then find the level from which there are enough of them
+      Arrays.fill(levelCount, 0);
+      long typeSeed = mix(seed + t * 0x9e3779b97f4a7c15L);
+      for (int k = 0; k < openCount; ++k) {
+        int i = open[k];
+        double value = noise(i % width, i / width, clusterSize, typeSeed);
+        level[i] = Math.min(LEVELS - 1, (int) (value * LEVELS));
+        ++levelCount[level[i]];
+      }
+      int threshold = LEVELS;
+      int covered = 0;
+      while (threshold > 0 && covered + levelCount[threshold - 1] <= wanted) {
+        covered += levelCount[--threshold];
+      }
+      // Part of the next level fills the rest, in row order
+      int rest = wanted - covered;
+
+      int kept = 0;
+      for (int k = 0; k < openCount; ++k) {
+        int i = open[k];
+        if (level[i] >= threshold || (level[i] == threshold - 1 && rest-- > 0)) {
+          terrain[i] = TYPES[t];
+        } else {
+          open[kept++] = i;
+        }
+      }
+      openCount = kept;
+    }
+
+    return MapBoard.fromLayout(board.getName(), width, height, board.getMaxSteps(), start,
+        terrain, board.getTreasureCells());
+  }
+
+  // Two octaves of value noise, from 0 to 1: random values on a grid of squares `size` apart (and
+  // half as far apart, counting half as much), blended smoothly in between
+  private static double noise(int x, int y, int size, long seed) {
+    double coarse = valueNoise(x, y, size, seed);
+    double fine = valueNoise(x, y, Math.max(1, size / 2), mix(seed));
+    return (2 * coarse + fine) / 3;
+  }
+
+  private static double valueNoise(int x, int y, int size, long seed) {
+    int gx = x / size, gy = y / size;
+    double fx = smooth((x % size + 0.5) / size);
+    double fy = smooth((y % size + 0.5) / size);
+    double top = lerp(lattice(gx, gy, seed), lattice(gx + 1, gy, seed), fx);
+    double bottom = lerp(lattice(gx, gy + 1, seed), lattice(gx + 1, gy + 1, seed), fx);
+    return lerp(top, bottom, fy);
+  }
+
+  // The random value, from 0 to 1, at a point of the grid
+  private static double lattice(int gx, int gy, long seed) {
+    long h = mix(seed ^ (gx * 0xc2b2ae3d27d4eb4fL) ^ (gy * 0x165667b19e3779f9L));
+    return (h >>> 11) * 0x1.0p-53;
+  }
+
+  private static double smooth(double f) {
+    return f * f * (3 - 2 * f);
+  }
+
+  private static double lerp(double a, double b, double f) {
+    return a + (b - a) * f;
+  }
+
+  // The 64-bit finalizer of SplittableRandom, which scrambles every bit of its input
+  private static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+}
@@ -32,7 +32,6 @@ import java.awt.event.WindowEvent;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.PrintWriter;
-import java.text.DecimalFormat;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
@@ -52,10 +51,13 @@ import javax.swing.JProgressBar;
 import javax.swing.JDialog;
 
 
+import com.ibm.vie.mazerunner.BinaryBoardFormat;
+import com.ibm.vie.mazerunner.BoardCache;
 import com.ibm.vie.mazerunner.MapBoard;
 import com.ibm.vie.mazerunner.IPlayer;
 import com.ibm.vie.mazerunner.MapBoardView;
 import com.ibm.vie.mazerunner.Move;
+import com.ibm.vie.mazerunner.util.ScoreTable;
 import com.ibm.vie.mazerunner.util.TestHarness;
 import com.ibm.vie.mazerunner.util.TestResult;
 
@@ -98,7 +100,8 @@ public class ScreenBoardSelector extends Screen {
 
     fileLoader = new JFileChooser(getDefaultBoardPath());
     FileNameExtensionFilter loadFilter =
-        new FileNameExtensionFilter("CSV Files (Comma Separated Values)", "csv");
+        new FileNameExtensionFilter("Board Files (CSV or binary)", "csv",
+            BinaryBoardFormat.EXTENSION.substring(1));
     fileLoader.setFileFilter(loadFilter);
     fileLoader.setMultiSelectionEnabled(true);
 
@@ -213,7 +216,7 @@ public class ScreenBoardSelector extends Screen {
         if (loadedBoards.containsKey(boardName)) {
           errors.append(boardName + " already loaded\n");
         } else {
-          MapBoard board = MapBoard.parseBoard(fullPath);
+          MapBoard board = BoardCache.load(fullPath);
           loadedBoards.put(boardName, board);
 
           final JPanel boardPanel = new JPanel();
@@ -386,6 +389,7 @@ public class ScreenBoardSelector extends Screen {
       public void actionPerformed(ActionEvent event) {
         final IPlayer player = GameData.getInstance().getBoardPlayer().getPlayer();
         final StringBuilder stats = new StringBuilder();
+        final ScoreTable table = new ScoreTable(stats);
 
         final int boardCount[] = {0};
         final boolean running[] = {true};
@@ -423,39 +427,28 @@ public class ScreenBoardSelector extends Screen {
             if (loadedBoards.size() < 1) {
               stats.append("There are no boards loaded to run");
             } else {
-              int grandTotal = 0;
               List<String> boards = new LinkedList<>(loadedBoards.keySet());
               Collections.sort(boards);
-              DecimalFormat num_formatter = new DecimalFormat("#,###");
-              stats.append(String.format("%-12s", "Board Name"));
-              stats.append(String.format("%8s", "Score"));
-              stats.append("\n_________________________\n");
+              table.addHeader();
               for (String boardName : boards) {
-                stats.append("\n" + String.format("%-12s", boardName + ":"));
+                table.addBoard(boardName);
                 SwingUtilities.invokeLater(updateStats);
 
+                MapBoard board = loadedBoards.get(boardName);
                 TestResult result = TestHarness.runBoard(player.getClass().getName(), player,
-                    new MapBoard(loadedBoards.get(boardName)));
+                    new MapBoard(board), TestHarness.scoreBound(board));
 
-
-                if (result.getException() != null) {
-                  stats.append(result.getException().toString());
-                } else {
-                  stats.append(String.format("%8s", num_formatter.format(result.getScore())));
-                }
+                table.addResult(result);
                 SwingUtilities.invokeLater(updateStats);
 
-                grandTotal += result.getScore();
                 ++boardCount[0];
                 SwingUtilities.invokeLater(updateStats);
                 if (!running[0]) {
-                  stats.append("\nCancelled by user");
+                  table.append("\nCancelled by user");
                   break;
                 }
               }
-              stats.append("\n\n");
-              stats.append(String.format("%-12s", "Grand Total:")
-                  + String.format("%8s", num_formatter.format(grandTotal)));
+              table.addTotals();
             }
             SwingUtilities.invokeLater(updateStats);
           }
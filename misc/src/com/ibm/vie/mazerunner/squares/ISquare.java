@@ -15,7 +15,6 @@
 
 package com.ibm.vie.mazerunner.squares;
 
-import java.lang.reflect.InvocationTargetException;
 import com.ibm.vie.mazerunner.IBoard;
 import com.ibm.vie.mazerunner.IPlayer;
 import com.ibm.vie.mazerunner.Location;
@@ -81,23 +80,14 @@ public interface ISquare {
   public String getSpriteName();
 
   /**
-   * Duplicates the square dynamically,
+   * Duplicates the square with the copy function {@link SquareTypes} has for its class.
    * 
    * Students do not need to call this
    * 
    * @return a copy of ISquare
    */
   public default ISquare duplicate() {
-    Class<? extends ISquare> classToLoad = this.getClass();
-    Class<?>[] args = {classToLoad};
-    try {
-      return classToLoad.getDeclaredConstructor(args).newInstance(this);
-    } catch (InstantiationException | IllegalAccessException | IllegalArgumentException
-        | InvocationTargetException | NoSuchMethodException | SecurityException e) {
-      throw new RuntimeException(
-          "There is no copy constructor for class " + classToLoad.getSimpleName(), e);
-    }
-
+    return SquareTypes.duplicate(this);
   }
 
 }
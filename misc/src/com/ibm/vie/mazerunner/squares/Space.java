@@ -30,8 +30,8 @@ import com.ibm.vie.mazerunner.Location;
 public class Space implements ISquare {
   protected int stepCount = 0;
   protected Location location;
-  private Color[] stepColors = new Color[] {new Color(22, 144, 42), new Color(86, 103, 42),
-      new Color(88, 83, 23), new Color(58, 55, 15)};
+  private static final Color[] stepColors = new Color[] {new Color(22, 144, 42),
+      new Color(86, 103, 42), new Color(88, 83, 23), new Color(58, 55, 15)};
 
   /**
    * Ignore this. Used for game setup.
@@ -0,0 +1,227 @@
+/**
+ * (C) Copyright IBM Corp. 2016,2022. All Rights Reserved. US Government Users Restricted Rights - Use,
+ * duplication or disclosure restricted by GSA ADP Schedule Contract with IBM Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.vie.mazerunner.squares;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Registry of the square types. The game engine stores a board as one type code per cell and uses
+ * this class to create {@link ISquare} objects only when they are asked for.
+ *
+ * The registry also holds the copy function used by {@link ISquare#duplicate()} for each square
+ * class. The built-in squares are registered here; other square types can {@link #register} their
+ * own. An unregistered class is copied through its copy constructor, which is looked up once and
+ * kept as a {@link MethodHandle}.
+ *
+ * Students do not need this.
+ */
+public final class SquareTypes {
+  public static final byte SPACE = 0;
+  public static final byte WALL = 1;
+  public static final byte TREASURE = 2;
+  public static final byte WATER = 3;
+  public static final byte BUSHES = 4;
+  public static final byte TREES = 5;
+  public static final byte MOUNTAIN = 6;
+  public static final byte LAVA = 7;
+  public static final byte MUD = 8;
+
+  private static final int TYPE_COUNT = 9;
+
+  private static final int[] STEP_COSTS = new int[TYPE_COUNT];
+
+  // The character board files use for each type
+  private static final char[] SYMBOLS = {' ', '#', 'T', 'w', 'B', 't', 'M', 'L', 'm'};
+
+  private static final Map<Class<?>, Function<ISquare, ISquare>> registered =
+      new ConcurrentHashMap<>();
+
+  private static final ClassValue<Function<ISquare, ISquare>> copiers =
+      new ClassValue<Function<ISquare, ISquare>>() {
+        @Override
+        protected Function<ISquare, ISquare> computeValue(Class<?> type) {
+          Function<ISquare, ISquare> copier = registered.get(type);
+          return (copier != null) ? copier : copyConstructor(type);
+        }
+      };
+
+  static {
+    for (byte code = 0; code < TYPE_COUNT; ++code) {
+      STEP_COSTS[code] = create(code, 0, 0, 0, false).getStepCost();
+    }
+
+    register(Space.class, Space::new);
+    register(Wall.class, Wall::new);
+    register(Treasure.class, Treasure::new);
+    register(Water.class, Water::new);
+    register(Bushes.class, Bushes::new);
+    register(Trees.class, Trees::new);
+    register(Mountain.class, Mountain::new);
+    register(Lava.class, Lava::new);
+    register(Mud.class, Mud::new);
+  }
+
+  private SquareTypes() {}
+
+  /**
+   * The number of steps it takes to move to a square of the given type, without creating one.
+   *
+   * @param code The type code of the square
+   * @return An integer of the step cost.
+   */
+  public static int getStepCost(byte code) {
+    return STEP_COSTS[code];
+  }
+
+  /**
+   * The character a board file uses for a square of the given type.
+   *
+   * @param code The type code of the square
+   * @return the character
+   */
+  public static char getSymbol(byte code) {
+    return SYMBOLS[code];
+  }
+
+  /**
+   * The type code of a square.
+   *
+   * @param square A square of one of the built-in types, or of a subclass of one
+   * @return the type code, {@link #SPACE} for any other square
+   */
+  public static byte codeOf(ISquare square) {
+    if (square instanceof Wall) {
+      return WALL;
+    } else if (square instanceof Treasure) {
+      return TREASURE;
+    } else if (square instanceof Water) {
+      return WATER;
+    } else if (square instanceof Bushes) {
+      return BUSHES;
+    } else if (square instanceof Trees) {
+      return TREES;
+    } else if (square instanceof Mountain) {
+      return MOUNTAIN;
+    } else if (square instanceof Lava) {
+      return LAVA;
+    } else if (square instanceof Mud) {
+      return MUD;
+    }
+    return SPACE;
+  }
+
+  /**
+   * Creates a square of the given type that reflects the state of a board cell.
+   *
+   * @param code The type code of the square
+   * @param row The row index the square will be located at
+   * @param col The column index the square will be located at
+   * @param stepCount The number of times the player has moved to the square
+   * @param hasTreasure true if the square still holds a treasure. Only used by {@link #TREASURE}.
+   * @return a new square
+   */
+  public static Space create(byte code, int row, int col, int stepCount, boolean hasTreasure) {
+    Space square;
+    switch (code) {
+      case SPACE:
+        square = new Space(row, col);
+        break;
+      case WALL:
+        square = new Wall(row, col);
+        break;
+      case TREASURE:
+        Treasure treasure = new Treasure(row, col);
+        treasure.spaceHasTreasure = hasTreasure;
+        square = treasure;
+        break;
+      case WATER:
+        square = new Water(row, col);
+        break;
+      case BUSHES:
+        square = new Bushes(row, col);
+        break;
+      case TREES:
+        square = new Trees(row, col);
+        break;
+      case MOUNTAIN:
+        square = new Mountain(row, col);
+        break;
+      case LAVA:
+        square = new Lava(row, col);
+        break;
+      case MUD:
+        square = new Mud(row, col);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown square type code " + code);
+    }
+    square.stepCount = stepCount;
+    return square;
+  }
+
+  /**
+   * Registers the function used to copy squares of exactly the given class. This replaces any
+   * function registered before for the class.
+   *
+   * @param <T> The square class
+   * @param type The square class
+   * @param copier Creates a copy of a square of the class
+   */
+  @SuppressWarnings("unchecked")
+  public static <T extends ISquare> void register(Class<T> type,
+      Function<? super T, ? extends ISquare> copier) {
+    registered.put(type, square -> copier.apply((T) square));
+    copiers.remove(type);
+  }
+
+  /**
+   * Copies a square with the function registered for its class.
+   *
+   * @param square The square to copy
+   * @return a copy of the square
+   */
+  public static ISquare duplicate(ISquare square) {
+    return copiers.get(square.getClass()).apply(square);
+  }
+
+  private static Function<ISquare, ISquare> copyConstructor(Class<?> type) {
+    MethodHandle constructor;
+    try {
+      constructor = MethodHandles.publicLookup().findConstructor(type,
+          MethodType.methodType(void.class, type));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      return square -> {
+        throw new RuntimeException(
+            "There is no copy constructor for class " + type.getSimpleName(), e);
+      };
+    }
+    MethodHandle copier = constructor.asType(MethodType.methodType(ISquare.class, ISquare.class));
+    return square -> {
+      try {
+        return (ISquare) copier.invokeExact(square);
+      } catch (RuntimeException | Error e) {
+        throw e;
+      } catch (Throwable e) {
+        throw new RuntimeException(e);
+      }
+    };
+  }
+}
@@ -28,7 +28,9 @@ import com.ibm.vie.mazerunner.Location;
  * treasures.
  */
 public class Treasure extends Space {
-  private boolean spaceHasTreasure = true;
+  private static final Color CLOSED_COLOR = new Color(22, 144, 42);
+
+  boolean spaceHasTreasure = true;
 
   /**
    * Students will not create Treasure. That would be cheating <code>: )</code>.
@@ -88,7 +90,7 @@ public class Treasure extends Space {
   }
 
   public Color getColor() {
-    return spaceHasTreasure() ? new Color(22, 144, 42) : Color.ORANGE;
+    return spaceHasTreasure() ? CLOSED_COLOR : Color.ORANGE;
   }
 
   public String getTypeString() {
@@ -0,0 +1,200 @@
+/**
+ * (C) Copyright IBM Corp. 2016,2022. All Rights Reserved. US Government Users Restricted Rights - Use,
+ * duplication or disclosure restricted by GSA ADP Schedule Contract with IBM Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.vie.mazerunner.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import com.ibm.vie.mazerunner.BinaryBoardFormat;
+import com.ibm.vie.mazerunner.BoardCache;
+import com.ibm.vie.mazerunner.IPlayer;
+import com.ibm.vie.mazerunner.MapBoard;
+
+/**
+ * Command line tool that runs a player on every board of a directory without the game's window, and
+ * prints the same {@link ScoreTable} as the game's run-all button. No Swing classes are loaded and
+ * AWT runs headless, so it starts quickly and works on machines without a display.
+ *
+ * The player is any {@link IPlayer} class on the classpath with a constructor that takes no
+ * arguments. One player plays every board, in order of the board names, like in the game. The exit
+ * status is 1 if a board could not be loaded or a game ended with an exception.
+ *
+ * lib/treasurehunt.jar predates this tool, so it runs from the compiled engine sources. From the
+ * project directory, compile them and the player to bin:
+ *
+ * <pre>
+ * javac -d bin -cp "lib/commons-cli-1.5.0.jar:lib/commons-csv-1.9.0.jar:lib/javacsv.jar"
+ *     $(find misc/src -name '*.java')
+ * javac -d bin -cp bin drjava/*.java
+ * </pre>
+ *
+ * Then: java -cp "lib/commons-cli-1.5.0.jar:lib/commons-csv-1.9.0.jar:bin"
+ * com.ibm.vie.mazerunner.util.BatchRunner -player=MyPlayer -boarddir=boards -out=scores.txt
+ *
+ */
+public class BatchRunner {
+  public static void main(String[] args) throws Exception {
+    // Before any square is loaded, as they use AWT colors
+    System.setProperty("java.awt.headless", "true");
+
+    Options cmdOps = new Options();
+    cmdOps.addOption(Option.builder("p") //
+        .longOpt("player") //
+        .argName("class") //
+        .hasArg() //
+        .desc("Name of the IPlayer class to run") //
+        .valueSeparator('=') //
+        .required() //
+        .build());
+    cmdOps.addOption(Option.builder("b") //
+        .longOpt("boarddir") //
+        .argName("dir") //
+        .hasArg() //
+        .desc("Directory with Board csvs or binary board files") //
+        .valueSeparator('=') //
+        .required() //
+        .build());
+    cmdOps.addOption(Option.builder("d") //
+        .longOpt("cachedir") //
+        .argName("dir") //
+        .hasArg() //
+        .desc("Directory to keep cache files of the boards in, so they load faster next time"
+            + " (default the " + BoardCache.DIRECTORY_PROPERTY + " system property, or none)") //
+        .valueSeparator('=') //
+        .build());
+    cmdOps.addOption(Option.builder("o") //
+        .longOpt("out") //
+        .argName("file") //
+        .hasArg() //
+        .desc("Also save the score table to this file") //
+        .valueSeparator('=') //
+        .build());
+
+    CommandLineParser parser = new DefaultParser();
+    CommandLine line;
+    try {
+      line = parser.parse(cmdOps, args);
+    } catch (ParseException exp) {
+      System.err.println("Parsing failed.  Reason: " + exp.getMessage());
+      HelpFormatter formatter = new HelpFormatter();
+      formatter.printHelp("com.ibm.vie.mazerunner.util.BatchRunner", cmdOps, true);
+      System.exit(1);
+      return;
+    }
+
+    File boardDir = new File(line.getOptionValue("b"));
+    if (!boardDir.isDirectory()) {
+      System.err.println("The board directory does not exist: " + boardDir);
+      System.exit(1);
+      return;
+    }
+    Path cacheDir = line.hasOption("d") ? Paths.get(line.getOptionValue("d"))
+        : BoardCache.getDirectory();
+    IPlayer player = (IPlayer) Class.forName(line.getOptionValue("p")).getDeclaredConstructor()
+        .newInstance();
+
+    boolean failed = false;
+    Map<String, MapBoard> boards = new TreeMap<>();
+    File[] boardFiles = boardDir.listFiles(file -> file.getName().toLowerCase().endsWith(".csv")
+        || BinaryBoardFormat.isBinaryBoard(file.getName()));
+    Arrays.sort(boardFiles);
+    for (File boardFile : boardFiles) {
+      String filename = boardFile.getName();
+      String boardName = filename.substring(0, filename.length() - 4);
+      if (boards.containsKey(boardName)) {
+        System.err.println(boardName + " already loaded, skipping " + boardFile);
+        continue;
+      }
+      try {
+        boards.put(boardName, BoardCache.load(boardFile.getAbsolutePath(), cacheDir));
+      } catch (Exception e) {
+        System.err.println("Failed to read file: " + boardFile.getAbsolutePath() + ": " + e);
+        failed = true;
+      }
+    }
+
+    StringBuilder stats = new StringBuilder();
+    ScoreTable table = new ScoreTable(new TeeAppendable(stats, System.out));
+    if (boards.isEmpty()) {
+      table.append("There are no boards loaded to run");
+    } else {
+      table.addHeader();
+      for (Map.Entry<String, MapBoard> board : boards.entrySet()) {
+        table.addBoard(board.getKey());
+        TestResult result = TestHarness.runBoard(player.getClass().getName(), player,
+            new MapBoard(board.getValue()), TestHarness.scoreBound(board.getValue()));
+        table.addResult(result);
+        failed |= result.getException() != null;
+      }
+      table.addTotals();
+    }
+    System.out.println();
+
+    if (line.hasOption("o")) {
+      try (PrintWriter writer = new PrintWriter(line.getOptionValue("o"))) {
+        writer.print(stats.toString().replace("\n", System.getProperty("line.separator")));
+      } catch (IOException e) {
+        System.err.println("Failed to save file: " + e.getMessage());
+        failed = true;
+      }
+    }
+    // Players may leave threads running
+    System.exit(failed ? 1 : 0);
+  }
+
+  // Writes the table to the console as it goes, and keeps it to save
+  private static final class TeeAppendable implements Appendable {
+    private final Appendable first, second;
+
+    TeeAppendable(Appendable first, Appendable second) {
+      this.first = first;
+      this.second = second;
+    }
+
+    @Override
+    public Appendable append(CharSequence csq) throws IOException {
+      first.append(csq);
+      second.append(csq);
+      return this;
+    }
+
+    @Override
+    public Appendable append(CharSequence csq, int start, int end) throws IOException {
+      first.append(csq, start, end);
+      second.append(csq, start, end);
+      return this;
+    }
+
+    @Override
+    public Appendable append(char c) throws IOException {
+      first.append(c);
+      second.append(c);
+      return this;
+    }
+  }
+}
@@ -0,0 +1,228 @@
+/**
+ * (C) Copyright IBM Corp. 2016,2022. All Rights Reserved. US Government Users Restricted Rights - Use,
+ * duplication or disclosure restricted by GSA ADP Schedule Contract with IBM Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.vie.mazerunner.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Times small pieces of work the way a microbenchmark harness does: each benchmark runs a few
+ * warmup iterations that are thrown away, then measured iterations of at least a given time each,
+ * and reports the average time per operation. The results can be written as JSON, to compare one
+ * release with another.
+ *
+ * A runner is used from one thread, and runs one benchmark at a time.
+ */
+public class BenchmarkRunner {
+  /**
+   * A piece of work to time.
+   */
+  public interface Workload {
+    /**
+     * Does the work once.
+     *
+     * @return any value that depends on the work, so that it cannot be optimized away
+     */
+    long run() throws Exception;
+  }
+
+  /**
+   * The measurements of one benchmark on one board.
+   */
+  public static final class Result {
+    public final String benchmark;
+    public final String board;
+    public final int operations;
+    // Nanoseconds per operation of each measured iteration
+    public final double[] samples;
+
+    Result(String benchmark, String board, int operations, double[] samples) {
+      this.benchmark = benchmark;
+      this.board = board;
+      this.operations = operations;
+      this.samples = samples;
+    }
+
+    public double getMean() {
+      double sum = 0;
+      for (double sample : samples) {
+        sum += sample;
+      }
+      return sum / samples.length;
+    }
+
+    public double getMin() {
+      double min = Double.MAX_VALUE;
+      for (double sample : samples) {
+        min = Math.min(min, sample);
+      }
+      return min;
+    }
+
+    /**
+     * @return the sample standard deviation, 0 for a single sample
+     */
+    public double getStdDev() {
+      if (samples.length < 2) {
+        return 0;
+      }
+      double mean = getMean(), sum = 0;
+      for (double sample : samples) {
+        sum += (sample - mean) * (sample - mean);
+      }
+      return Math.sqrt(sum / (samples.length - 1));
+    }
+  }
+
+  private final int warmupIterations;
+  private final int measuredIterations;
+  private final long iterationNanos;
+  private final Pattern filter;
+  private final List<Result> results = new ArrayList<>();
+  // Where the workloads' values go, so that they are used
+  private long sink;
+
+  /**
+   * @param warmupIterations Iterations to run before measuring
+   * @param measuredIterations Iterations to measure, at least 1
+   * @param iterationMillis How long an iteration keeps running the workload; a slow workload still
+   *        runs once per iteration
+   * @param filter Only benchmarks whose name contains a match are run, or null to run them all
+   */
+  public BenchmarkRunner(int warmupIterations, int measuredIterations, long iterationMillis,
+      Pattern filter) {
+    if (measuredIterations < 1) {
+      throw new IllegalArgumentException("Measure at least 1 iteration: " + measuredIterations);
+    }
+    this.warmupIterations = warmupIterations;
+    this.measuredIterations = measuredIterations;
+    this.iterationNanos = iterationMillis * 1000000L;
+    this.filter = filter;
+  }
+
+  /**
+   * Whether a benchmark would be run, so that its setup can be skipped if not.
+   */
+  public boolean isSelected(String benchmark) {
+    return filter == null || filter.matcher(benchmark).find();
+  }
+
+  /**
+   * Times a workload and prints its average time per operation.
+   *
+   * @param benchmark The name of the benchmark, like the method it times
+   * @param board The name of the board it runs on
+   * @param operations How many operations one run of the workload does
+   * @param workload The work to time
+   * @return the result, or null if the benchmark is not selected
+   */
+  public Result measure(String benchmark, String board, int operations, Workload workload)
+      throws Exception {
+    if (!isSelected(benchmark)) {
+      return null;
+    }
+    for (int i = 0; i < warmupIterations; ++i) {
+      iterate(operations, workload);
+    }
+    double[] samples = new double[measuredIterations];
+    for (int i = 0; i < measuredIterations; ++i) {
+      samples[i] = iterate(operations, workload);
+    }
+
+    Result result = new Result(benchmark, board, operations, samples);
+    results.add(result);
+    System.out.println(String.format("%-40s%-30s%16.1f ns/op  +- %.1f", benchmark, board,
+        result.getMean(), result.getStdDev()));
+    return result;
+  }
+
+  // Runs the workload for one iteration, and returns the nanoseconds per operation
+  private double iterate(int operations, Workload workload) throws Exception {
+    long runs = 0;
+    long start = System.nanoTime();
+    long elapsed;
+    do {
+      sink += workload.run();
+      ++runs;
+      elapsed = System.nanoTime() - start;
+    } while (elapsed < iterationNanos);
+    return (double) elapsed / (runs * operations);
+  }
+
+  public List<Result> getResults() {
+    return results;
+  }
+
+  /**
+   * Writes every result so far as a JSON document, with the Java version and settings they were
+   * measured with.
+   */
+  public void writeJson(Path file) throws IOException {
+    try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      out.write("{\n");
+      out.write("  \"date\": " + quote(Instant.now().toString()) + ",\n");
+      out.write("  \"javaVersion\": " + quote(System.getProperty("java.version")) + ",\n");
+      out.write("  \"vmName\": " + quote(System.getProperty("java.vm.name")) + ",\n");
+      out.write("  \"processors\": " + Runtime.getRuntime().availableProcessors() + ",\n");
+      out.write("  \"warmupIterations\": " + warmupIterations + ",\n");
+      out.write("  \"measuredIterations\": " + measuredIterations + ",\n");
+      out.write("  \"iterationMillis\": " + iterationNanos / 1000000L + ",\n");
+      out.write("  \"results\": [");
+      for (int i = 0; i < results.size(); ++i) {
+        Result result = results.get(i);
+        out.write(i == 0 ? "\n" : ",\n");
+        out.write("    {\"benchmark\": " + quote(result.benchmark) + ", \"board\": "
+            + quote(result.board) + ", \"unit\": \"ns/op\", \"score\": " + number(result.getMean())
+            + ", \"stdDev\": " + number(result.getStdDev()) + ", \"min\": "
+            + number(result.getMin()) + ", \"samples\": [");
+        for (int j = 0; j < result.samples.length; ++j) {
+          out.write((j == 0 ? "" : ", ") + number(result.samples[j]));
+        }
+        out.write("]}");
+      }
+      out.write("\n  ]\n}\n");
+    }
+    if (sink == 42) {
+      System.out.println(); // Keep the workloads' values from being optimized away
+    }
+  }
+
+  private static String number(double value) {
+    return String.format(Locale.ROOT, "%.1f", value);
+  }
+
+  private static String quote(String value) {
+    StringBuilder quoted = new StringBuilder("\"");
+    for (char c : value.toCharArray()) {
+      if (c == '"' || c == '\\') {
+        quoted.append('\\').append(c);
+      } else if (c < ' ') {
+        quoted.append(String.format("\\u%04x", (int) c));
+      } else {
+        quoted.append(c);
+      }
+    }
+    return quoted.append('"').toString();
+  }
+}
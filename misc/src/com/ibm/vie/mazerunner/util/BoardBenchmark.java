@@ -0,0 +1,282 @@
+/**
+ * (C) Copyright IBM Corp. 2016,2022. All Rights Reserved. US Government Users Restricted Rights - Use,
+ * duplication or disclosure restricted by GSA ADP Schedule Contract with IBM Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.vie.mazerunner.util;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import com.ibm.vie.mazerunner.BinaryBoardFormat;
+import com.ibm.vie.mazerunner.Location;
+import com.ibm.vie.mazerunner.MapBoard;
+import com.ibm.vie.mazerunner.Move;
+import com.ibm.vie.mazerunner.squares.ISquare;
+import com.ibm.vie.mazerunner.squares.SquareTypes;
+
+/**
+ * Command line tool that benchmarks the board operations players and the game use most: loading a
+ * board file, copying a board, moving on it, listing the unexplored moves and copying squares. It
+ * runs on every board of a directory and on large generated boards, and writes the results as JSON
+ * (see {@link BenchmarkRunner}).
+ *
+ * Other suites, like the pathfinding benchmarks of a player, run on the same boards by calling
+ * {@link #run(String, String[], Suite...)}. The player's are in bench/PathfindingBenchmark.java.
+ *
+ * lib/treasurehunt.jar predates this tool, so run it from the compiled sources. From the project
+ * directory, compile the engine, then the player and its benchmarks against it, to bin:
+ *
+ * <pre>
+ * javac -d bin -cp "lib/commons-cli-1.5.0.jar:lib/commons-csv-1.9.0.jar:lib/javacsv.jar"
+ *     $(find misc/src -name '*.java')
+ * javac -d bin -cp bin drjava/*.java bench/*.java
+ * </pre>
+ *
+ * Then: java -cp "lib/commons-cli-1.5.0.jar:bin" com.ibm.vie.mazerunner.util.BoardBenchmark
+ * -boards=boards -generate=500,2000 -out=bench.json, or PathfindingBenchmark in place of
+ * com.ibm.vie.mazerunner.util.BoardBenchmark to include the player's benchmarks.
+ *
+ */
+public class BoardBenchmark {
+  // How many squares of a board are copied by the square benchmarks
+  private static final int SQUARES = 4096;
+  // How many times the move benchmark steps off the start and back on a copy of the board
+  private static final int MOVE_PAIRS = 64;
+
+  /**
+   * Benchmarks to run on each board.
+   */
+  public interface Suite {
+    /**
+     * Times the suite's benchmarks on one board.
+     *
+     * @param runner The runner to time them with
+     * @param boardFile The file the board was loaded from
+     * @param board The board
+     */
+    void run(BenchmarkRunner runner, Path boardFile, MapBoard board) throws Exception;
+  }
+
+  public static void main(String[] args) throws Exception {
+    run("com.ibm.vie.mazerunner.util.BoardBenchmark", args);
+  }
+
+  /**
+   * Runs the board benchmarks and the given suites on every board, as the command line says, and
+   * writes the results.
+   *
+   * @param tool The name of the tool, for the usage message
+   * @param args The command line
+   * @param suites More benchmarks to run on each board, after the board benchmarks
+   */
+  public static void run(String tool, String[] args, Suite... suites) throws Exception {
+    Options cmdOps = new Options();
+    cmdOps.addOption(valueOption("d", "boards", "dir",
+        "directory of csv and binary board files to run on (default boards)"));
+    cmdOps.addOption(valueOption("g", "generate", "n,...",
+        "sizes of the square boards to generate and run on too (default 500,2000)"));
+    cmdOps.addOption(valueOption("r", "seed", "n", "seed of the generated boards (default 0)"));
+    cmdOps.addOption(
+        valueOption("o", "out", "file", "JSON file to write (default benchmark.json)"));
+    cmdOps.addOption(valueOption("f", "filter", "regex",
+        "only run the benchmarks whose name contains a match"));
+    cmdOps.addOption(valueOption("w", "warmup", "n", "warmup iterations (default 2)"));
+    cmdOps.addOption(valueOption("i", "iterations", "n", "measured iterations (default 5)"));
+    cmdOps.addOption(valueOption("t", "time", "ms", "time of each iteration (default 200)"));
+
+    CommandLineParser parser = new DefaultParser();
+    CommandLine line;
+    BenchmarkRunner runner;
+    int[] sizes;
+    long seed;
+    try {
+      line = parser.parse(cmdOps, args);
+      String filter = line.getOptionValue("f");
+      runner = new BenchmarkRunner(Integer.parseInt(line.getOptionValue("w", "2")),
+          Integer.parseInt(line.getOptionValue("i", "5")),
+          Long.parseLong(line.getOptionValue("t", "200")),
+          filter == null ? null : Pattern.compile(filter));
+      sizes = Arrays.stream(line.getOptionValue("g", "500,2000").split(","))
+          .filter(size -> !size.trim().isEmpty()).mapToInt(size -> Integer.parseInt(size.trim()))
+          .toArray();
+      seed = Long.parseLong(line.getOptionValue("r", "0"));
+    } catch (ParseException | IllegalArgumentException exp) {
+      System.err.println("Parsing failed.  Reason: " + exp.getMessage());
+      HelpFormatter formatter = new HelpFormatter();
+      formatter.printHelp(tool, cmdOps, true);
+      System.exit(1);
+      return;
+    }
+
+    List<Path> files = new ArrayList<>();
+    File[] bundled = new File(line.getOptionValue("d", "boards")).listFiles((dir,
+        name) -> name.endsWith(".csv") || name.endsWith(BinaryBoardFormat.EXTENSION));
+    if (bundled != null) {
+      Arrays.sort(bundled);
+      for (File file : bundled) {
+        files.add(file.toPath());
+      }
+    }
+
+    // Generated boards are written out so that loading them can be timed too
+    Path generated = Files.createTempDirectory("benchmark");
+    try {
+      for (int size : sizes) {
+        Path file = generated.resolve("generated_" + size + "x" + size + ".csv");
+        BoardGenerator.writeBoardToCSV(file.toString(), MapBoard.randomizedPrim(
+            "generated_" + size + "x" + size, size, size, 50, 50, 5, size * size, seed));
+        files.add(file);
+      }
+
+      for (Path file : files) {
+        MapBoard board = MapBoard.loadBoard(file.toString());
+        benchmark(runner, file, board);
+        for (Suite suite : suites) {
+          suite.run(runner, file, board);
+        }
+      }
+    } finally {
+      for (File file : generated.toFile().listFiles()) {
+        file.delete();
+      }
+      Files.delete(generated);
+    }
+
+    Path out = Paths.get(line.getOptionValue("o", "benchmark.json"));
+    runner.writeJson(out);
+    System.out.println("Wrote " + runner.getResults().size() + " results to " + out);
+  }
+
+  private static void benchmark(BenchmarkRunner runner, Path file, MapBoard board)
+      throws Exception {
+    String name = board.getName();
+    String path = file.toString();
+    if (BinaryBoardFormat.isBinaryBoard(path)) {
+      runner.measure("MapBoard.readBinaryBoard", name, 1,
+          () -> MapBoard.readBinaryBoard(path).getWidth());
+    } else {
+      runner.measure("MapBoard.parseBoard", name, 1, () -> MapBoard.parseBoard(path).getWidth());
+    }
+
+    runner.measure("MapBoard(MapBoard)", name, 1,
+        () -> new MapBoard(board).getRemainingSteps());
+
+    // Steps off the start and back again, on a copy that has the steps for it
+    Move off = firstOpenMove(board);
+    if (off != null) {
+      int stepCost = board.getSquareAt(off.apply(board.getStartingLocation())).getStepCost()
+          + board.getSquareAt(board.getStartingLocation()).getStepCost();
+      int pairs = Math.min(MOVE_PAIRS, (board.getMaxSteps() - 1) / stepCost);
+      if (pairs > 0) {
+        runner.measure("MapBoard.move", name, 2 * pairs, () -> {
+          MapBoard copy = new MapBoard(board);
+          for (int i = 0; i < pairs; ++i) {
+            copy.move(off);
+            copy.move(Move.BACKTRACK);
+          }
+          return copy.getRemainingSteps();
+        });
+      }
+    }
+
+    MapBoard atStart = new MapBoard(board);
+    runner.measure("MapBoard.getUnexploredMoves", name, 1,
+        () -> atStart.getUnexploredMoves().size());
+
+    if (runner.isSelected("ISquare.duplicate")) {
+      ISquare[] squares = sampleSquares(board);
+      runner.measure("ISquare.duplicate", name, squares.length, () -> {
+        long checksum = 0;
+        for (ISquare square : squares) {
+          checksum += square.duplicate().getStepCount();
+        }
+        return checksum;
+      });
+      runner.measure("ISquare.duplicate.reflection", name, squares.length, () -> {
+        long checksum = 0;
+        for (ISquare square : squares) {
+          checksum += reflectiveCopy(square).getStepCount();
+        }
+        return checksum;
+      });
+    }
+  }
+
+  // A move from the start onto a square that is neither a wall nor a treasure, which would end the
+  // game if it was the last one
+  private static Move firstOpenMove(MapBoard board) {
+    Location start = board.getStartingLocation();
+    for (Move move : Arrays.asList(Move.NORTH, Move.SOUTH, Move.EAST, Move.WEST)) {
+      Location next = move.apply(start);
+      if (next.getRow() < 0 || next.getRow() >= board.getHeight() || next.getCol() < 0
+          || next.getCol() >= board.getWidth()) {
+        continue;
+      }
+      byte code = SquareTypes.codeOf(board.getSquareAt(next));
+      if (code != SquareTypes.WALL && code != SquareTypes.TREASURE) {
+        return move;
+      }
+    }
+    return null;
+  }
+
+  // Up to SQUARES squares spread evenly over the board, so every type it has is copied
+  private static ISquare[] sampleSquares(MapBoard board) {
+    int width = board.getWidth();
+    int cells = width * board.getHeight();
+    int stride = Math.max(1, cells / SQUARES);
+    ISquare[] squares = new ISquare[(cells + stride - 1) / stride];
+    for (int i = 0; i < squares.length; ++i) {
+      int cell = i * stride;
+      squares[i] = board.getSquareAt(new Location(cell / width, cell % width));
+    }
+    return squares;
+  }
+
+  // The copy ISquare.duplicate() used to make, looking up the constructor on every call
+  private static ISquare reflectiveCopy(ISquare square) {
+    Class<? extends ISquare> classToLoad = square.getClass();
+    Class<?>[] args = {classToLoad};
+    try {
+      return classToLoad.getDeclaredConstructor(args).newInstance(square);
+    } catch (InstantiationException | IllegalAccessException | IllegalArgumentException
+        | InvocationTargetException | NoSuchMethodException | SecurityException e) {
+      throw new RuntimeException(
+          "There is no copy constructor for class " + classToLoad.getSimpleName(), e);
+    }
+  }
+
+  private static Option valueOption(String opt, String longOpt, String argName, String desc) {
+    return Option.builder(opt) //
+        .longOpt(longOpt) //
+        .argName(argName) //
+        .hasArg() //
+        .valueSeparator('=') //
+        .desc(desc) //
+        .build();
+  }
+}
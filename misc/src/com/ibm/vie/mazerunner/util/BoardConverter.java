@@ -0,0 +1,137 @@
+/**
+ * (C) Copyright IBM Corp. 2016,2022. All Rights Reserved. US Government Users Restricted Rights - Use,
+ * duplication or disclosure restricted by GSA ADP Schedule Contract with IBM Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.vie.mazerunner.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import com.ibm.vie.mazerunner.BinaryBoardFormat;
+import com.ibm.vie.mazerunner.MapBoard;
+
+/**
+ * 
+ * Command line tool to convert boards between comma-separated and binary board files (see
+ * {@link BinaryBoardFormat})
+ * 
+ * lib/treasurehunt.jar predates this tool. Compile the engine to bin as in {@link BoardBenchmark},
+ * then from the project directory convert one board, to the format of the output file's
+ * extension: java -cp "lib/commons-cli-1.5.0.jar:lib/commons-csv-1.9.0.jar:bin"
+ * com.ibm.vie.mazerunner.util.BoardConverter -in=boards/Level_1_0.csv -out=Level_1_0.thb -compress
+ * 
+ * Convert every board of a directory into another directory: each board goes to the other format,
+ * or to the one given with -format=csv or -format=thb
+ * 
+ */
+public class BoardConverter {
+
+  private static final String CSV = ".csv";
+
+  public static void main(String[] args) throws Exception {
+    Options cmdOps = new Options();
+    cmdOps.addOption(Option.builder("i") //
+        .longOpt("in") //
+        .argName("path") //
+        .hasArg() //
+        .desc("board file or directory of board files to convert") //
+        .valueSeparator('=') //
+        .required() //
+        .build());
+    cmdOps.addOption(Option.builder("o") //
+        .longOpt("out") //
+        .argName("path") //
+        .hasArg() //
+        .desc("board file or directory to write") //
+        .valueSeparator('=') //
+        .required() //
+        .build());
+    cmdOps.addOption(Option.builder("f") //
+        .longOpt("format") //
+        .argName("csv|thb") //
+        .hasArg() //
+        .desc("format to write") //
+        .valueSeparator('=') //
+        .build());
+    cmdOps.addOption(Option.builder("z") //
+        .longOpt("compress") //
+        .desc("compress binary board files") //
+        .build());
+
+    CommandLineParser parser = new DefaultParser();
+    try {
+      CommandLine line = parser.parse(cmdOps, args);
+      File in = new File(line.getOptionValue("i"));
+      File out = new File(line.getOptionValue("o"));
+      String format = line.getOptionValue("f");
+      if (format != null && !format.equals("csv") && !format.equals("thb")) {
+        throw new ParseException("Unknown format " + format);
+      }
+      boolean compress = line.hasOption("z");
+
+      if (in.isDirectory()) {
+        if (!out.isDirectory() && !out.mkdirs()) {
+          throw new IOException("Could not create the directory " + out);
+        }
+        File[] boardFiles = in.listFiles(file -> isBoardFile(file.getName()));
+        Arrays.sort(boardFiles);
+        long before = 0, after = 0;
+        for (File boardFile : boardFiles) {
+          String name = boardFile.getName();
+          boolean binary = (format != null) ? format.equals("thb")
+              : !BinaryBoardFormat.isBinaryBoard(name);
+          String base = name.substring(0, name.lastIndexOf('.'));
+          File target = new File(out, base + (binary ? BinaryBoardFormat.EXTENSION : CSV));
+          convert(boardFile, target, binary, compress);
+          before += boardFile.length();
+          after += target.length();
+        }
+        System.out.println("Converted " + boardFiles.length + " boards, " + before + " bytes -> "
+            + after + " bytes");
+      } else {
+        boolean binary = (format != null) ? format.equals("thb")
+            : BinaryBoardFormat.isBinaryBoard(out.getName());
+        convert(in, out, binary, compress);
+      }
+    } catch (ParseException exp) {
+      System.err.println("Parsing failed.  Reason: " + exp.getMessage());
+      HelpFormatter formatter = new HelpFormatter();
+      formatter.printHelp("com.ibm.vie.mazerunner.util.BoardConverter", cmdOps, true);
+      System.exit(1);
+    }
+  }
+
+  private static boolean isBoardFile(String name) {
+    return name.toLowerCase().endsWith(CSV) || BinaryBoardFormat.isBinaryBoard(name);
+  }
+
+  private static void convert(File from, File to, boolean binary, boolean compress)
+      throws IOException {
+    MapBoard board = MapBoard.loadBoard(from.getPath());
+    if (binary) {
+      BoardGenerator.writeBoardToBinary(to.getPath(), board, compress);
+    } else {
+      BoardGenerator.writeBoardToCSV(to.getPath(), board);
+    }
+    System.out.println(from + " (" + from.length() + " bytes) -> " + to + " (" + to.length()
+        + " bytes)");
+  }
+}
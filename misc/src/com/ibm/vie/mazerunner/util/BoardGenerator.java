@@ -15,10 +15,12 @@
 
 package com.ibm.vie.mazerunner.util;
 
-import java.awt.Point;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
@@ -26,12 +28,13 @@ import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
+import com.ibm.vie.mazerunner.BinaryBoardFormat;
 import com.ibm.vie.mazerunner.IBoard;
 import com.ibm.vie.mazerunner.Location;
 import com.ibm.vie.mazerunner.MapBoard;
+import com.ibm.vie.mazerunner.TerrainGenerator;
 import com.ibm.vie.mazerunner.squares.ISquare;
-import com.ibm.vie.mazerunner.squares.Treasure;
-import com.ibm.vie.mazerunner.squares.Wall;
+import com.ibm.vie.mazerunner.squares.SquareTypes;
 
 /**
  * 
@@ -41,6 +44,11 @@ import com.ibm.vie.mazerunner.squares.Wall;
  * "commons-cli-1.5.0.jar:javacsv.jar:treasurehunt.jar" com.ibm.vie.mazerunner.util.BoardGenerator
  * -name="Nick" -height=50 -width=50 -treasure=20 -branch=100 -open=0 -steps 1000
  * 
+ * Add -seed=42 to make the same board every time, and -binary to write a binary board file (see
+ * {@link BinaryBoardFormat}) instead of a csv. -terrain=10,5,5,2,1,10 covers that percentage of
+ * the open squares with water, bushes, trees, mountain, lava and mud, in clusters about -cluster=8
+ * squares across.
+ * 
  * 
  * @author ntl
  *
@@ -103,19 +111,40 @@ public class BoardGenerator {
         .desc("max number of steps") //
         .required() //
         .build());
+    cmdOps.addOption(Option.builder("r") //
+        .longOpt("seed") //
+        .argName("seed") //
+        .hasArg() //
+        .valueSeparator('=') //
+        .desc("random seed; the same seed makes the same board") //
+        .build());
+    cmdOps.addOption(Option.builder("x") //
+        .longOpt("binary") //
+        .desc("write a compressed binary board file instead of a csv") //
+        .build());
+    addTerrainOptions(cmdOps);
 
     CommandLineParser parser = new DefaultParser();
     try {
       // parse the command line arguments
       CommandLine line = parser.parse(cmdOps, args);
-      final IBoard board = MapBoard.randomizedPrim(//
-          line.getOptionValue("b"), Integer.parseInt(line.getOptionValue("w")),
+      long seed = line.hasOption("r") ? Long.parseLong(line.getOptionValue("r"))
+          : new SplittableRandom().nextLong();
+      final IBoard board = withTerrain(line, MapBoard.randomizedPrim(//
+          line.getOptionValue("n"), Integer.parseInt(line.getOptionValue("w")),
           Integer.parseInt(line.getOptionValue("h")), Integer.parseInt(line.getOptionValue("t")),
           Integer.parseInt(line.getOptionValue("b")), Integer.parseInt(line.getOptionValue("o")),
-          Integer.parseInt(line.getOptionValue("s")));
-
-      String file_name = line.getOptionValue("n") + ".csv";
-      writeBoardToCSV(file_name, board);
+          Integer.parseInt(line.getOptionValue("s")), seed), seed);
+
+      if (line.hasOption("x")) {
+        String file_name = line.getOptionValue("n") + BinaryBoardFormat.EXTENSION;
+        writeBoardToBinary(file_name, board, true);
+        System.out.println("Wrote " + file_name);
+      } else {
+        String file_name = line.getOptionValue("n") + ".csv";
+        writeBoardToCSV(file_name, board);
+        System.out.println("Wrote " + file_name);
+      }
     } catch (ParseException exp) {
       // oops, something went wrong
       System.err.println("Parsing failed.  Reason: " + exp.getMessage());
@@ -127,43 +156,93 @@ public class BoardGenerator {
   }
 
 
-  public static void writeBoardToCSV(String path, IBoard board)
-      throws FileNotFoundException, IOException {
-    try (FileOutputStream fos = new FileOutputStream(path)) {
-      StringBuffer outputContents = new StringBuffer();
+  /**
+   * Adds the options for {@link #withTerrain(CommandLine, MapBoard, long)}.
+   */
+  static void addTerrainOptions(Options cmdOps) {
+    cmdOps.addOption(Option.builder("e") //
+        .longOpt("terrain") //
+        .argName("pcts") //
+        .hasArg() //
+        .valueSeparator('=') //
+        .desc("percent of open squares covered with water,bushes,trees,mountain,lava,mud") //
+        .build());
+    cmdOps.addOption(Option.builder("c") //
+        .longOpt("cluster") //
+        .argName("size") //
+        .hasArg() //
+        .valueSeparator('=') //
+        .desc("about how many squares across a cluster of terrain is (default "
+            + TerrainGenerator.DEFAULT_CLUSTER_SIZE + ")") //
+        .build());
+  }
+
+  /**
+   * Lays terrain over a board as the -terrain and -cluster options say, see
+   * {@link TerrainGenerator}.
+   *
+   * @return the board with terrain, or the same board if there is no -terrain option
+   */
+  static MapBoard withTerrain(CommandLine line, MapBoard board, long seed) {
+    if (!line.hasOption("e")) {
+      return board;
+    }
+    String[] parts = line.getOptionValue("e").split(",");
+    int[] percents = new int[parts.length];
+    for (int i = 0; i < parts.length; ++i) {
+      percents[i] = Integer.parseInt(parts[i].trim());
+    }
+    int clusterSize = Integer.parseInt(line.getOptionValue("c",
+        Integer.toString(TerrainGenerator.DEFAULT_CLUSTER_SIZE)));
+    return TerrainGenerator.paint(board, percents, clusterSize, seed);
+  }
 
+  /**
+   * Writes a board to a comma-separated board file, as it was loaded: with every treasure, and the
+   * player on the starting location.
+   *
+   * @param path The path of the file
+   * @param board The board
+   * @throws IOException if the file cannot be written
+   */
+  public static void writeBoardToCSV(String path, IBoard board) throws IOException {
+    try (Writer out = Files.newBufferedWriter(Paths.get(path), StandardCharsets.US_ASCII)) {
+      Location start = board.getStartingLocation();
       for (int y = 0; y < board.getHeight(); y++) {
         for (int x = 0; x < board.getWidth(); x++) {
-
-          ISquare s = board.getSquareAt(new Location(y, x));
-          if (s instanceof Treasure)
-            outputContents.append('T');
-          else if (s instanceof Wall)
-            outputContents.append('#');
-          else if ((board.getPlayerLocation().getCol() == x)
-              && (board.getPlayerLocation().getRow() == y))
-            outputContents.append('P');
-          else
-            outputContents.append(' ');
+          if (start.getRow() == y && start.getCol() == x) {
+            out.write('P');
+          } else {
+            ISquare square = board.getSquareAt(new Location(y, x));
+            out.write(SquareTypes.getSymbol(SquareTypes.codeOf(square)));
+          }
 
           if (x < board.getWidth() - 1)
-            outputContents.append(',');
+            out.write(',');
           else
-            outputContents.append('\n');
+            out.write('\n');
         }
       }
 
       // Add a line for max moves
-      outputContents.append(board.getMaxSteps());
+      out.write(Integer.toString(board.getMaxSteps()));
       for (int x = 0; x < board.getWidth() - 2; x++)
-        outputContents.append(',');
-      outputContents.append('\n');
-
-      fos.write(outputContents.toString().getBytes());
-      System.out.write(outputContents.toString().getBytes());
-    } finally {
-
+        out.write(',');
+      out.write('\n');
     }
   }
 
+  /**
+   * Writes a board to a binary board file, as it was loaded. See {@link BinaryBoardFormat}.
+   *
+   * @param path The path of the file
+   * @param board The board
+   * @param compress true to compress the squares
+   * @throws IOException if the file cannot be written
+   */
+  public static void writeBoardToBinary(String path, IBoard board, boolean compress)
+      throws IOException {
+    BinaryBoardFormat.write(path, board, compress);
+  }
+
 }
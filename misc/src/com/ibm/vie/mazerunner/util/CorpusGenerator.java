@@ -0,0 +1,252 @@
+/**
+ * (C) Copyright IBM Corp. 2016,2022. All Rights Reserved. US Government Users Restricted Rights - Use,
+ * duplication or disclosure restricted by GSA ADP Schedule Contract with IBM Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.vie.mazerunner.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import com.ibm.vie.mazerunner.BinaryBoardFormat;
+import com.ibm.vie.mazerunner.MapBoard;
+import com.ibm.vie.mazerunner.TerrainGenerator;
+
+/**
+ * 
+ * Command line tool to generate a corpus of boards: one board for every combination of the given
+ * sizes, treasures, branch and open percentages and steps, and for every seed of a range. Each
+ * value can be a comma-separated list. The boards are made in parallel and written straight to
+ * the output directory, with a {@value #MANIFEST} listing every board's parameters and seed.
+ * 
+ * Boards are made with {@link MapBoard#randomizedPrim(String, int, int, int, int, int, int, long)},
+ * and the -terrain and -cluster options lay terrain over every board as in BoardGenerator, so
+ * BoardGenerator makes the same board again from the same parameters and seed.
+ * 
+ * lib/treasurehunt.jar predates this tool. Compile the engine to bin as in {@link BoardBenchmark},
+ * then from the project directory: java -cp "lib/commons-cli-1.5.0.jar:bin"
+ * com.ibm.vie.mazerunner.util.CorpusGenerator -out=corpus -width=100,500 -height=100,500
+ * -treasure=10,50 -branch=50 -open=5 -steps=2000 -seeds=0..99
+ * 
+ */
+public class CorpusGenerator {
+
+  public static final String MANIFEST = "manifest.csv";
+
+  /**
+   * The parameters of one board of the corpus.
+   */
+  private static final class BoardSpec {
+    final int width, height, treasures, branch, open, steps;
+    final long seed;
+    final String name;
+
+    BoardSpec(int width, int height, int treasures, int branch, int open, int steps, long seed,
+        String prefix) {
+      this.width = width;
+      this.height = height;
+      this.treasures = treasures;
+      this.branch = branch;
+      this.open = open;
+      this.steps = steps;
+      this.seed = seed;
+      this.name = prefix + "_" + width + "x" + height + "_t" + treasures + "_b" + branch + "_o"
+          + open + "_s" + steps + "_" + seed;
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    Options cmdOps = new Options();
+    cmdOps.addOption(listOption("w", "width", "board widths"));
+    cmdOps.addOption(listOption("h", "height", "board heights"));
+    cmdOps.addOption(listOption("t", "treasure", "numbers of treasures"));
+    cmdOps.addOption(listOption("b", "branch", "percents of branches visited"));
+    cmdOps.addOption(listOption("o", "open", "percents of unvisited squares that are open"));
+    cmdOps.addOption(listOption("s", "steps", "max numbers of steps"));
+    cmdOps.addOption(Option.builder("r") //
+        .longOpt("seeds") //
+        .argName("first..last") //
+        .hasArg() //
+        .valueSeparator('=') //
+        .desc("range of random seeds, or a single seed") //
+        .required() //
+        .build());
+    cmdOps.addOption(Option.builder("d") //
+        .longOpt("out") //
+        .argName("dir") //
+        .hasArg() //
+        .valueSeparator('=') //
+        .desc("directory to write the boards to") //
+        .required() //
+        .build());
+    cmdOps.addOption(Option.builder("n") //
+        .longOpt("name") //
+        .argName("prefix") //
+        .hasArg() //
+        .valueSeparator('=') //
+        .desc("prefix of the board names (default board)") //
+        .build());
+    cmdOps.addOption(Option.builder("p") //
+        .longOpt("parallel") //
+        .argName("threads") //
+        .hasArg() //
+        .valueSeparator('=') //
+        .desc("number of boards to make at once (default: the number of processors)") //
+        .build());
+    cmdOps.addOption(Option.builder("x") //
+        .longOpt("binary") //
+        .desc("write compressed binary board files instead of csvs") //
+        .build());
+    BoardGenerator.addTerrainOptions(cmdOps);
+
+    CommandLineParser parser = new DefaultParser();
+    CommandLine line;
+    List<BoardSpec> specs = new ArrayList<>();
+    try {
+      line = parser.parse(cmdOps, args);
+      String prefix = line.getOptionValue("n", "board");
+      long[] seeds = parseRange(line.getOptionValue("r"));
+      for (int width : parseList(line.getOptionValue("w"))) {
+        for (int height : parseList(line.getOptionValue("h"))) {
+          for (int treasures : parseList(line.getOptionValue("t"))) {
+            for (int branch : parseList(line.getOptionValue("b"))) {
+              for (int open : parseList(line.getOptionValue("o"))) {
+                for (int steps : parseList(line.getOptionValue("s"))) {
+                  for (long seed = seeds[0]; seed <= seeds[1]; ++seed) {
+                    specs.add(
+                        new BoardSpec(width, height, treasures, branch, open, steps, seed, prefix));
+                  }
+                }
+              }
+            }
+          }
+        }
+      }
+    } catch (ParseException | NumberFormatException exp) {
+      System.err.println("Parsing failed.  Reason: " + exp.getMessage());
+      HelpFormatter formatter = new HelpFormatter();
+      formatter.printHelp("com.ibm.vie.mazerunner.util.CorpusGenerator", cmdOps, true);
+      System.exit(1);
+      return;
+    }
+
+    File out = new File(line.getOptionValue("d"));
+    if (!out.isDirectory() && !out.mkdirs()) {
+      throw new IOException("Could not create the directory " + out);
+    }
+    int parallelism = Integer.parseInt(line.getOptionValue("p",
+        Integer.toString(Runtime.getRuntime().availableProcessors())));
+    boolean binary = line.hasOption("x");
+
+    long start = System.nanoTime();
+    generate(specs, out, binary, parallelism, line);
+    System.out.println("Wrote " + specs.size() + " boards and " + MANIFEST + " to " + out + " in "
+        + (System.nanoTime() - start) / 1000000 + " ms");
+  }
+
+  /**
+   * Makes and writes the boards on a pool of {@code parallelism} workers, then writes the manifest
+   * in the order of specs. Each worker writes its board as soon as it is made, so only the boards
+   * being made are in memory.
+   */
+  private static void generate(List<BoardSpec> specs, File out, boolean binary, int parallelism,
+      CommandLine line) throws IOException, InterruptedException {
+    String extension = binary ? BinaryBoardFormat.EXTENSION : ".csv";
+    // The same for every board: quoted, as the percentages are comma-separated
+    String terrain = line.hasOption("e") ? "\"" + line.getOptionValue("e") + "\","
+        + line.getOptionValue("c", Integer.toString(TerrainGenerator.DEFAULT_CLUSTER_SIZE)) : ",";
+    ExecutorService workers = Executors.newFixedThreadPool(parallelism);
+    try {
+      List<Future<Integer>> boards = new ArrayList<>(specs.size());
+      for (BoardSpec spec : specs) {
+        boards.add(workers.submit(() -> {
+          MapBoard board = BoardGenerator.withTerrain(line, MapBoard.randomizedPrim(spec.name,
+              spec.width, spec.height, spec.treasures, spec.branch, spec.open, spec.steps,
+              spec.seed), spec.seed);
+          String path = new File(out, spec.name + extension).getPath();
+          if (binary) {
+            BoardGenerator.writeBoardToBinary(path, board, true);
+          } else {
+            BoardGenerator.writeBoardToCSV(path, board);
+          }
+          return board.getRemainingTreasureCount();
+        }));
+      }
+
+      try (Writer manifest = Files.newBufferedWriter(new File(out, MANIFEST).toPath(),
+          StandardCharsets.UTF_8)) {
+        manifest.write(
+            "File,Width,Height,Treasures,Treasures Placed,Branch,Open,Steps,Seed,Terrain,Cluster\n");
+        for (int i = 0; i < specs.size(); ++i) {
+          BoardSpec spec = specs.get(i);
+          int placed;
+          try {
+            placed = boards.get(i).get();
+          } catch (ExecutionException e) {
+            throw new IOException("Could not make board " + spec.name, e.getCause());
+          }
+          manifest.write(spec.name + extension + "," + spec.width + "," + spec.height + ","
+              + spec.treasures + "," + placed + "," + spec.branch + "," + spec.open + ","
+              + spec.steps + "," + spec.seed + "," + terrain + "\n");
+        }
+      }
+    } finally {
+      workers.shutdownNow();
+    }
+  }
+
+  private static Option listOption(String opt, String longOpt, String desc) {
+    return Option.builder(opt) //
+        .longOpt(longOpt) //
+        .argName("n,...") //
+        .hasArg() //
+        .valueSeparator('=') //
+        .desc(desc) //
+        .required() //
+        .build();
+  }
+
+  private static int[] parseList(String value) {
+    String[] parts = value.split(",");
+    int[] values = new int[parts.length];
+    for (int i = 0; i < parts.length; ++i) {
+      values[i] = Integer.parseInt(parts[i].trim());
+    }
+    return values;
+  }
+
+  private static long[] parseRange(String value) throws ParseException {
+    int dots = value.indexOf("..");
+    long first = Long.parseLong((dots < 0 ? value : value.substring(0, dots)).trim());
+    long last = (dots < 0) ? first : Long.parseLong(value.substring(dots + 2).trim());
+    if (last < first) {
+      throw new ParseException("The seed range " + value + " is empty");
+    }
+    return new long[] {first, last};
+  }
+}
@@ -0,0 +1,150 @@
+/**
+ * (C) Copyright IBM Corp. 2016,2022. All Rights Reserved. US Government Users Restricted Rights - Use,
+ * duplication or disclosure restricted by GSA ADP Schedule Contract with IBM Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.vie.mazerunner.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+/**
+ * How long each phase of a game took and what the game cost. All times are wall clock
+ * nanoseconds.
+ */
+public class GameMetrics {
+  private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+  private long analyzeNanos = 0;
+  private long completeNanos = 0;
+  private long[] moveNanos = new long[64];
+  private int moves = 0;
+  private long allocatedBytes = -1;
+  private int boardCopies = 0;
+
+  /**
+   * Reads how many bytes the current thread has allocated so far.
+   *
+   * @return the bytes allocated, or -1 if the JVM cannot measure it
+   */
+  static long currentThreadAllocatedBytes() {
+    if (threads instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+      if (sunThreads.isThreadAllocatedMemorySupported()
+          && sunThreads.isThreadAllocatedMemoryEnabled()) {
+        return sunThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+      }
+    }
+    return -1;
+  }
+
+  void recordAnalyze(long nanos) {
+    analyzeNanos = nanos;
+  }
+
+  void recordMove(long nanos) {
+    if (moves == moveNanos.length) {
+      moveNanos = Arrays.copyOf(moveNanos, moves * 2);
+    }
+    moveNanos[moves++] = nanos;
+  }
+
+  void recordComplete(long nanos) {
+    completeNanos = nanos;
+  }
+
+  void recordAllocatedBytes(long bytes) {
+    allocatedBytes = bytes;
+  }
+
+  void recordBoardCopy() {
+    ++boardCopies;
+  }
+
+  public long getAnalyzeNanos() {
+    return analyzeNanos;
+  }
+
+  public long getCompleteNanos() {
+    return completeNanos;
+  }
+
+  /**
+   * @return the number of selectMove calls that returned
+   */
+  public int getMoveCount() {
+    return moves;
+  }
+
+  /**
+   * @return the bytes allocated by the thread the player ran on, or -1 if they were not measured
+   */
+  public long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
+  /**
+   * @return the number of board copies the harness handed to the player
+   */
+  public int getBoardCopies() {
+    return boardCopies;
+  }
+
+  public long getTotalMoveNanos() {
+    long total = 0;
+    for (int i = 0; i < moves; ++i) {
+      total += moveNanos[i];
+    }
+    return total;
+  }
+
+  /**
+   * Gets a percentile of the selectMove latencies, using the nearest rank.
+   *
+   * @param percentile The percentile, from 0 to 100
+   * @return the latency in nanoseconds, or 0 if there were no moves
+   */
+  public long getMovePercentileNanos(double percentile) {
+    if (moves == 0) {
+      return 0;
+    }
+    long[] sorted = Arrays.copyOf(moveNanos, moves);
+    Arrays.sort(sorted);
+    int rank = (int) Math.ceil(percentile / 100 * moves);
+    return sorted[Math.max(0, Math.min(moves - 1, rank - 1))];
+  }
+
+  public long getMaxMoveNanos() {
+    return getMovePercentileNanos(100);
+  }
+
+  /**
+   * Converts nanoseconds to milliseconds for reports.
+   *
+   * @param nanos A time in nanoseconds
+   * @return the time in milliseconds with three decimals
+   */
+  static String millis(long nanos) {
+    return String.format("%.3f", nanos / 1e6);
+  }
+
+  public String toString() {
+    return "analyze=" + millis(analyzeNanos) + "ms moves=" + moves + " total="
+        + millis(getTotalMoveNanos()) + "ms p50=" + millis(getMovePercentileNanos(50)) + "ms p95="
+        + millis(getMovePercentileNanos(95)) + "ms p99=" + millis(getMovePercentileNanos(99))
+        + "ms max=" + millis(getMaxMoveNanos())
+        + "ms complete=" + millis(completeNanos) + "ms allocated=" + allocatedBytes
+        + " copies=" + boardCopies;
+  }
+}
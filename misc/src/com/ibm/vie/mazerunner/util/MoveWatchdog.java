@@ -0,0 +1,219 @@
+/**
+ * (C) Copyright IBM Corp. 2016,2022. All Rights Reserved. US Government Users Restricted Rights - Use,
+ * duplication or disclosure restricted by GSA ADP Schedule Contract with IBM Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.vie.mazerunner.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Enforces time budgets on the player calls of every running game from a single daemon thread.
+ *
+ * Each game plays on its own thread and times its player calls through a {@link Watch}. Starting
+ * and ending a call only reads a clock, so a move costs no thread hand-off. A call that goes over
+ * its budget and returns is caught when it ends. A call that never returns is caught by the
+ * watchdog, which interrupts the game thread and abandons the game.
+ */
+final class MoveWatchdog implements Runnable {
+  private static final long CHECK_INTERVAL_MILLIS = 10;
+  private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+  private static MoveWatchdog instance = null;
+
+  private final Set<Watch> watches = ConcurrentHashMap.newKeySet();
+
+  private MoveWatchdog() {}
+
+  static synchronized MoveWatchdog getInstance() {
+    if (instance == null) {
+      instance = new MoveWatchdog();
+      Thread thread = new Thread(instance, "move-watchdog");
+      thread.setDaemon(true);
+      thread.start();
+    }
+    return instance;
+  }
+
+  /**
+   * Starts watching a game.
+   *
+   * @param player The thread the game's player calls run on
+   * @param cpuClock true to measure budgets in the player thread's CPU time rather than wall time
+   * @param totalMoveNanos The budget for all of the game's moves together
+   * @return the watch the game thread times its calls with
+   */
+  Watch watch(Thread player, boolean cpuClock, long totalMoveNanos) {
+    Watch watch = new Watch(player, cpuClock && threads.isThreadCpuTimeSupported(), totalMoveNanos);
+    watches.add(watch);
+    synchronized (this) {
+      notifyAll();
+    }
+    return watch;
+  }
+
+  void unwatch(Watch watch) {
+    watches.remove(watch);
+  }
+
+  @Override
+  public void run() {
+    try {
+      while (true) {
+        synchronized (this) {
+          while (watches.isEmpty()) {
+            wait();
+          }
+        }
+        for (Watch watch : watches) {
+          watch.check();
+        }
+        Thread.sleep(CHECK_INTERVAL_MILLIS);
+      }
+    } catch (InterruptedException e) {
+      // Daemon thread, nothing left to watch
+    }
+  }
+
+  /**
+   * Thrown on an abandoned game's thread when its player finally returns, to end the game there.
+   */
+  static class AbandonedException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+  }
+
+  /**
+   * Times the player calls of one game.
+   */
+  static final class Watch {
+    private final Thread player;
+    private final boolean cpuClock;
+    private final long totalMoveNanos;
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    private String callName;
+    private long callStart = -1;
+    private long callLimit;
+    private boolean callIsMove;
+    private long moveNanosUsed = 0;
+
+    private volatile TimeoutException timeout = null;
+    private volatile Throwable failure = null;
+
+    private Watch(Thread player, boolean cpuClock, long totalMoveNanos) {
+      this.player = player;
+      this.cpuClock = cpuClock;
+      this.totalMoveNanos = totalMoveNanos;
+    }
+
+    private long clock() {
+      if (!cpuClock) {
+        return System.nanoTime();
+      }
+      return (Thread.currentThread() == player) ? threads.getCurrentThreadCpuTime()
+          : threads.getThreadCpuTime(player.getId());
+    }
+
+    /**
+     * Runs a player call on the game thread within a budget.
+     *
+     * @param name Name of the call for the timeout message
+     * @param limitNanos The budget for this call
+     * @param isMove true if the call counts toward the budget for all moves
+     * @param call The player call
+     * @return the wall clock nanoseconds the call took
+     * @throws AbandonedException if the game ran out of time during the call
+     */
+    long run(String name, long limitNanos, boolean isMove, Runnable call) {
+      long wallStart = System.nanoTime();
+      synchronized (this) {
+        if (timeout != null) {
+          throw new AbandonedException();
+        }
+        callName = name;
+        callLimit = limitNanos;
+        callIsMove = isMove;
+        callStart = clock();
+      }
+      try {
+        call.run();
+      } finally {
+        synchronized (this) {
+          check();
+          if (callIsMove) {
+            moveNanosUsed += clock() - callStart;
+          }
+          callStart = -1;
+        }
+      }
+      if (timeout != null) {
+        throw new AbandonedException();
+      }
+      return System.nanoTime() - wallStart;
+    }
+
+    synchronized void check() {
+      if (callStart < 0 || timeout != null) {
+        return;
+      }
+      long used = clock() - callStart;
+      if (used > callLimit) {
+        expire(callName + " took longer than " + TimeUnit.NANOSECONDS.toMillis(callLimit) + "ms");
+      } else if (callIsMove && moveNanosUsed + used > totalMoveNanos) {
+        expire("Moves took longer than " + TimeUnit.NANOSECONDS.toMillis(totalMoveNanos)
+            + "ms in total");
+      }
+    }
+
+    private void expire(String message) {
+      timeout = new TimeoutException(message);
+      player.interrupt();
+      finished.countDown();
+    }
+
+    /**
+     * Called by the game thread when the game ends, with the failure that ended it if any.
+     *
+     * @param failure What the player or board threw, or null
+     */
+    void finish(Throwable failure) {
+      if (!(failure instanceof AbandonedException)) {
+        this.failure = failure;
+      }
+      finished.countDown();
+    }
+
+    /**
+     * Waits until the game ends or is abandoned.
+     *
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    void await() throws InterruptedException {
+      finished.await();
+    }
+
+    TimeoutException getTimeout() {
+      return timeout;
+    }
+
+    Throwable getFailure() {
+      return failure;
+    }
+  }
+}
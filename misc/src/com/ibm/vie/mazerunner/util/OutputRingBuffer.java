@@ -0,0 +1,81 @@
+/**
+ * (C) Copyright IBM Corp. 2016,2022. All Rights Reserved. US Government Users Restricted Rights - Use,
+ * duplication or disclosure restricted by GSA ADP Schedule Contract with IBM Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.vie.mazerunner.util;
+
+import java.io.OutputStream;
+
+/**
+ * An output stream that keeps only the last bytes written to it. A capacity of zero throws
+ * everything away.
+ */
+public class OutputRingBuffer extends OutputStream {
+  private final byte[] buffer;
+  private long written = 0;
+
+  public OutputRingBuffer(int capacity) {
+    this.buffer = new byte[capacity];
+  }
+
+  @Override
+  public synchronized void write(int b) {
+    if (buffer.length > 0) {
+      buffer[(int) (written % buffer.length)] = (byte) b;
+    }
+    ++written;
+  }
+
+  @Override
+  public synchronized void write(byte[] b, int off, int len) {
+    if (len > buffer.length) { // Only the tail of this write will be kept
+      off += len - buffer.length;
+      written += len - buffer.length;
+      len = buffer.length;
+    }
+    while (len > 0) {
+      int pos = (int) (written % buffer.length);
+      int chunk = Math.min(len, buffer.length - pos);
+      System.arraycopy(b, off, buffer, pos, chunk);
+      off += chunk;
+      len -= chunk;
+      written += chunk;
+    }
+  }
+
+  /**
+   * @return the total number of bytes written, including those no longer kept
+   */
+  public synchronized long getBytesWritten() {
+    return written;
+  }
+
+  /**
+   * @return the bytes still kept, oldest first
+   */
+  public synchronized byte[] toByteArray() {
+    int kept = (int) Math.min(written, buffer.length);
+    byte[] result = new byte[kept];
+    int start = (int) ((written - kept) % Math.max(buffer.length, 1));
+    int first = Math.min(kept, buffer.length - start);
+    System.arraycopy(buffer, start, result, 0, first);
+    System.arraycopy(buffer, 0, result, first, kept - first);
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return new String(toByteArray());
+  }
+}
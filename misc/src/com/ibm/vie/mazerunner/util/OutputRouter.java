@@ -0,0 +1,85 @@
+/**
+ * (C) Copyright IBM Corp. 2016,2022. All Rights Reserved. US Government Users Restricted Rights - Use,
+ * duplication or disclosure restricted by GSA ADP Schedule Contract with IBM Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.vie.mazerunner.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * A {@link PrintStream} that is installed once as {@link System#out} and sends each thread's output
+ * to the stream that thread was routed to. Threads that were not routed write to the original
+ * console. Threads started by a routed thread inherit its route, so a player's helper threads are
+ * captured along with it.
+ *
+ * This lets concurrent games keep their players' output apart without swapping the global stream.
+ */
+public class OutputRouter extends PrintStream {
+  private static OutputRouter installed = null;
+
+  private final InheritableThreadLocal<OutputStream> routes;
+
+  private OutputRouter(PrintStream console, InheritableThreadLocal<OutputStream> routes) {
+    super(new OutputStream() {
+      private OutputStream target() {
+        OutputStream route = routes.get();
+        return (route != null) ? route : console;
+      }
+
+      @Override
+      public void write(int b) throws IOException {
+        target().write(b);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        target().write(b, off, len);
+      }
+
+      @Override
+      public void flush() throws IOException {
+        target().flush();
+      }
+    }, true);
+    this.routes = routes;
+  }
+
+  /**
+   * Installs the router as {@link System#out} if it is not installed yet.
+   *
+   * @return the installed router
+   */
+  public static synchronized OutputRouter install() {
+    if (installed == null || System.out != installed) {
+      installed = new OutputRouter(System.out, new InheritableThreadLocal<>());
+      System.setOut(installed);
+    }
+    return installed;
+  }
+
+  /**
+   * Sends the current thread's output to a stream.
+   *
+   * @param route the stream to write to, or null to write to the console
+   * @return the stream the thread was routed to before, or null for the console
+   */
+  public OutputStream route(OutputStream route) {
+    flush();
+    OutputStream previous = routes.get();
+    routes.set(route);
+    return previous;
+  }
+}
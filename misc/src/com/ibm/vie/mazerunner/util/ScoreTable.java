@@ -0,0 +1,91 @@
+/**
+ * (C) Copyright IBM Corp. 2016,2022. All Rights Reserved. US Government Users Restricted Rights - Use,
+ * duplication or disclosure restricted by GSA ADP Schedule Contract with IBM Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.vie.mazerunner.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.text.DecimalFormat;
+
+/**
+ * The table of scores a run of every board prints: a line per board with the score and the bound
+ * on it, or the exception the game ended with, then the grand totals. The game's run-all screen and
+ * {@link BatchRunner} both write it, so their results can be compared line by line.
+ *
+ * The table is written as it goes, a board's name before its game is played and its scores after.
+ */
+public class ScoreTable {
+  private final Appendable out;
+  private final DecimalFormat numFormatter = new DecimalFormat("#,###");
+  private int grandTotal = 0;
+  private int boundTotal = 0;
+
+  /**
+   * @param out Where the table is written
+   */
+  public ScoreTable(Appendable out) {
+    this.out = out;
+  }
+
+  public void addHeader() {
+    append(String.format("%-12s", "Board Name"));
+    append(String.format("%8s", "Score"));
+    append(String.format("%8s", "Bound"));
+    append("\n_________________________________\n");
+  }
+
+  /**
+   * Starts the line of a board, before its game is played.
+   */
+  public void addBoard(String boardName) {
+    append("\n" + String.format("%-12s", boardName + ":"));
+  }
+
+  /**
+   * Ends the line of a board with the result of its game, and adds it to the totals. The bound total
+   * only counts the bounds that are shown: not on the line of a game that ended with an exception,
+   * nor of one whose bound was not worked out.
+   */
+  public void addResult(TestResult result) {
+    if (result.getException() != null) {
+      append(result.getException().toString());
+    } else {
+      append(String.format("%8s", numFormatter.format(result.getScore())));
+      if (result.getScoreBound() >= 0) {
+        append(String.format("%8s", numFormatter.format(result.getScoreBound())));
+        boundTotal += result.getScoreBound();
+      }
+    }
+    grandTotal += result.getScore();
+  }
+
+  public void addTotals() {
+    append("\n\n");
+    append(String.format("%-12s", "Grand Total:")
+        + String.format("%8s", numFormatter.format(grandTotal))
+        + String.format("%8s", numFormatter.format(boundTotal)));
+  }
+
+  /**
+   * Adds any other text, like a note that the run was cancelled.
+   */
+  public void append(String text) {
+    try {
+      out.append(text);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -17,76 +17,184 @@ package com.ibm.vie.mazerunner.util;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
-import java.net.URLConnection;
 import java.security.CodeSource;
-import java.security.PermissionCollection;
 import java.security.Permissions;
 import java.security.ProtectionDomain;
 import java.security.cert.Certificate;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import com.ibm.vie.mazerunner.IPlayer;
 
 /**
  * Class loader to load a student solution and dependent classes from a jar. Classes not in the jar
  * will be loaded from the parent class path
  * 
+ * The class files of a jar are read in one pass the first time any loader opens it, and the bytes
+ * are kept for later loaders of the same, unchanged jar. Only the {@value #MAX_CACHED_JARS} jars
+ * opened most recently are kept, and {@link #evict(File)} drops a jar that will not be opened again.
+ * Each loader still defines its own classes, so every loader gets fresh static state. All classes
+ * from one jar share a single {@link ProtectionDomain}.
  * 
  * @author ntl
  *
  */
 public class StudentClassLoader extends URLClassLoader {
+  public static final int MAX_CACHED_JARS = 8;
+
+  // By absolute path, least recently opened first
+  private static final Map<String, JarClasses> jarCache =
+      Collections.synchronizedMap(new LinkedHashMap<String, JarClasses>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, JarClasses> eldest) {
+          return size() > MAX_CACHED_JARS;
+        }
+      });
+
   private final URL jar;
+  private final Map<String, byte[]> classBytes;
+  private final ProtectionDomain domain;
+
+  static {
+    registerAsParallelCapable();
+  }
 
+  /**
+   * The class files of one version of a jar, by class name.
+   */
+  private static final class JarClasses {
+    final long lastModified;
+    final long length;
+    final Map<String, byte[]> classBytes;
+
+    JarClasses(long lastModified, long length, Map<String, byte[]> classBytes) {
+      this.lastModified = lastModified;
+      this.length = length;
+      this.classBytes = classBytes;
+    }
+  }
 
   public StudentClassLoader(final URL jar) throws MalformedURLException {
     super(new URL[] {jar});
     this.jar = jar;
+    this.classBytes = readClasses(jar);
+    this.domain =
+        new ProtectionDomain(new CodeSource(jar, new Certificate[] {}), new Permissions());
   }
 
-  @Override
-  public Class<?> loadClass(String name) throws ClassNotFoundException {
-    if (name.startsWith("com.ibm")) {
-      return StudentClassLoader.class.getClassLoader().loadClass(name);
-    }
-
+  private static Map<String, byte[]> readClasses(URL jar) {
+    File file;
     try {
-      URL classUrl = new URL("jar:" + jar.toString() + "!/" + name.replace('.', '/') + ".class");
-      URLConnection connection = classUrl.openConnection();
+      file = new File(jar.toURI());
+    } catch (Exception e) {
+      // Not a local file, classes will be loaded by the URLClassLoader
+      return Collections.emptyMap();
+    }
 
-      try (InputStream input = connection.getInputStream()) {
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-        int data = input.read();
+    String key = file.getAbsolutePath();
+    JarClasses cached = jarCache.get(key);
+    if (cached != null && cached.lastModified == file.lastModified()
+        && cached.length == file.length()) {
+      return cached.classBytes;
+    }
 
-        while (data != -1) {
-          buffer.write(data);
-          data = input.read();
+    long lastModified = file.lastModified();
+    long length = file.length();
+    Map<String, byte[]> classes = new HashMap<>();
+    try (ZipFile zip = new ZipFile(file)) {
+      Enumeration<? extends ZipEntry> entries = zip.entries();
+      byte[] buffer = new byte[8192];
+      while (entries.hasMoreElements()) {
+        ZipEntry entry = entries.nextElement();
+        String path = entry.getName();
+        if (entry.isDirectory() || !path.endsWith(".class")) {
+          continue;
         }
+        ByteArrayOutputStream bytes =
+            new ByteArrayOutputStream((entry.getSize() > 0) ? (int) entry.getSize() : 8192);
+        try (InputStream input = zip.getInputStream(entry)) {
+          int read;
+          while ((read = input.read(buffer)) != -1) {
+            bytes.write(buffer, 0, read);
+          }
+        }
+        String name = path.substring(0, path.length() - ".class".length()).replace('/', '.');
+        classes.put(name, bytes.toByteArray());
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to read " + file.getName(), e);
+    }
 
-        byte[] classData = buffer.toByteArray();
-
-        CodeSource source = new CodeSource(classUrl, new Certificate[] {});
-        PermissionCollection permissions = new Permissions();
-        return defineClass(name, classData, 0, classData.length,
-            new ProtectionDomain(source, permissions));
+    Map<String, byte[]> classBytes = Collections.unmodifiableMap(classes);
+    jarCache.put(key, new JarClasses(lastModified, length, classBytes));
+    return classBytes;
+  }
 
-      }
+  /**
+   * Drops the class files kept for a jar, once no more loaders will be made for it. Loaders made
+   * already keep theirs.
+   */
+  public static void evict(File jarFile) {
+    jarCache.remove(jarFile.getAbsolutePath());
+  }
 
+  @Override
+  public Class<?> loadClass(String name) throws ClassNotFoundException {
+    if (name.startsWith("com.ibm")) {
+      return StudentClassLoader.class.getClassLoader().loadClass(name);
+    }
 
-    } catch (FileNotFoundException e) {
-      return super.loadClass(name);
-    } catch (Exception e) {
+    synchronized (getClassLoadingLock(name)) {
+      Class<?> loaded = findLoadedClass(name);
+      if (loaded != null) {
+        return loaded;
+      }
 
-      throw new ClassNotFoundException("Unable to load class " + name + " from " + jar.toString(),
-          e);
+      byte[] classData = classBytes.get(name);
+      if (classData == null) {
+        return super.loadClass(name);
+      }
+      try {
+        return defineClass(name, classData, 0, classData.length, domain);
+      } catch (Exception e) {
+        throw new ClassNotFoundException("Unable to load class " + name + " from " + jar.toString(),
+            e);
+      }
     }
   }
 
+  /**
+   * Loads and verifies every class in the jar without initializing any of them, so the time this
+   * takes is not charged to the player. A class that fails to load is skipped here; it fails the
+   * same way when the player first uses it.
+   *
+   * @return the number of classes that loaded
+   */
+  public int preloadClasses() {
+    int loaded = 0;
+    for (String name : classBytes.keySet()) {
+      try {
+        // Reflecting on the methods links the class, which verifies its bytecode
+        loadClass(name).getDeclaredMethods();
+        ++loaded;
+      } catch (ClassNotFoundException | LinkageError e) {
+        // Left for the player to run into
+      }
+    }
+    return loaded;
+  }
 
   @SuppressWarnings("unchecked")
   public static Class<? extends IPlayer> getMyPlayerFromJar(File jarFile, final String className)
@@ -15,15 +15,17 @@
 
 package com.ibm.vie.mazerunner.util;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintStream;
+import java.io.OutputStream;
 import java.io.UncheckedIOException;
 import java.lang.reflect.InvocationTargetException;
 import java.net.MalformedURLException;
-import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
@@ -32,7 +34,6 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
@@ -58,6 +59,9 @@ import org.apache.commons.cli.ParseException;
  * TestHarness has to exist in the default package so it can "see" MyPlayer Three is no way to
  * "import" the default package
  */
+import com.ibm.vie.mazerunner.BinaryBoardFormat;
+import com.ibm.vie.mazerunner.BoardCache;
+import com.ibm.vie.mazerunner.DistanceFieldCache;
 import com.ibm.vie.mazerunner.IPlayer;
 import com.ibm.vie.mazerunner.MapBoard;
 import com.ibm.vie.mazerunner.Move;
@@ -66,20 +70,26 @@ public class TestHarness {
   private static long SECONDS_FOR_ANALYZE = 10;
   private static long SECONDS_FOR_COMPLETE = 10;
   private static long SECONDS_FOR_MOVE = 3;
+  private static int outputCaptureBytes = 64 * 1024;
+  private static long totalMoveNanos = Long.MAX_VALUE;
+  private static boolean cpuBudget = false;
 
 
-  private static List<MapBoard> loadBoards(File boardDir) {
+  private static List<MapBoard> loadBoards(File boardDir, Path cacheDir) {
     if (!boardDir.exists() || !boardDir.isDirectory()) {
       throw new RuntimeException(
           "The specified base directory for boards does not appear to be valid: " + boardDir);
     }
 
     List<MapBoard> boards = new LinkedList<>();
-    for (File boardFile : boardDir
-        .listFiles(file -> file.getName().toLowerCase().endsWith(".csv"))) {
+    File[] boardFiles = boardDir.listFiles(file -> file.getName().toLowerCase().endsWith(".csv")
+        || BinaryBoardFormat.isBinaryBoard(file.getName()));
+    Arrays.sort(boardFiles);
+    for (File boardFile : boardFiles) {
       System.out.println("Loading board " + boardFile.getAbsolutePath());
       try {
-        boards.add(MapBoard.parseBoard(boardFile.getAbsolutePath()));
+        MapBoard board = BoardCache.load(boardFile.getAbsolutePath(), cacheDir);
+        boards.add(board);
       } catch (Exception e) {
         throw new RuntimeException("Could not load board " + boardFile.getAbsolutePath(), e);
       }
@@ -89,30 +99,75 @@ public class TestHarness {
   }
 
   private static IPlayer loadPlayer(File jarFile) {
+    return newPlayer(jarFile, loadPlayerClass(jarFile));
+  }
+
+  // Loads MyPlayer from a jar with a new class loader, so it gets fresh static state
+  private static Class<?> loadPlayerClass(File jarFile) {
     try {
-      URLClassLoader loader = new StudentClassLoader(jarFile.toURI().toURL());
-      try {
-        Class<?> clazz = Class.forName("MyPlayer", true, loader);
-        return (IPlayer) clazz.getDeclaredConstructor().newInstance();
-      } catch (InstantiationException | IllegalAccessException | IllegalArgumentException
-          | InvocationTargetException | NoSuchMethodException | SecurityException
-          | ClassNotFoundException e) {
-        throw new RuntimeException("Could not load MyPlayer from jar " + jarFile.getName(), e);
-      }
+      StudentClassLoader loader = new StudentClassLoader(jarFile.toURI().toURL());
+      loader.preloadClasses();
+      return Class.forName("MyPlayer", true, loader);
+    } catch (ClassNotFoundException e) {
+      throw new RuntimeException("Could not load MyPlayer from jar " + jarFile.getName(), e);
     } catch (MalformedURLException e) {
       throw new RuntimeException(e);
     }
+  }
+
+  private static IPlayer newPlayer(File jarFile, Class<?> playerClass) {
+    try {
+      return (IPlayer) playerClass.getDeclaredConstructor().newInstance();
+    } catch (InstantiationException | IllegalAccessException | IllegalArgumentException
+        | InvocationTargetException | NoSuchMethodException | SecurityException e) {
+      throw new RuntimeException("Could not load MyPlayer from jar " + jarFile.getName(), e);
+    }
+  }
+
+  /**
+   * The player class a worker thread last loaded, so its next games from the same jar reuse the
+   * class loader.
+   */
+  private static final class WorkerPlayerClass {
+    final File jar;
+    final Class<?> playerClass;
+
+    WorkerPlayerClass(File jar, Class<?> playerClass) {
+      this.jar = jar;
+      this.playerClass = playerClass;
+    }
+  }
+
+  private static final ThreadLocal<WorkerPlayerClass> workerPlayerClass = new ThreadLocal<>();
 
+  // A new player for a game on a worker thread, from the worker's class loader for the jar
+  private static IPlayer workerPlayer(File jar) {
+    WorkerPlayerClass loaded = workerPlayerClass.get();
+    if (loaded == null || !loaded.jar.equals(jar)) {
+      loaded = new WorkerPlayerClass(jar, loadPlayerClass(jar));
+      workerPlayerClass.set(loaded);
+    }
+    return newPlayer(jar, loaded.playerClass);
   }
 
   public static void main(String[] args) {
 
     CommandLineArgs cliArgs = CommandLineArgs.parse(args);
     if (cliArgs != null) { // valid syntax
-      List<MapBoard> boards = loadBoards(cliArgs.getBoardDirectory());
-      Collection<TestResult> results = processPlayerJarDirectory(cliArgs.getJarDirectory(), boards);
+      outputCaptureBytes = cliArgs.getOutputCaptureBytes();
+      totalMoveNanos = cliArgs.getTotalMoveNanos();
+      cpuBudget = cliArgs.isCpuBudget();
+      List<MapBoard> boards =
+          loadBoards(cliArgs.getBoardDirectory(), cliArgs.getCacheDirectory());
+      // Once per board, not per game, as each takes a search from every treasure
+      int[] scoreBounds = boards.parallelStream().mapToInt(TestHarness::scoreBound).toArray();
+      Collection<TestResult> results = processPlayerJarDirectory(cliArgs.getJarDirectory(), boards,
+          scoreBounds, cliArgs.getParallelism());
       try {
         TestResult.printResults(new FileWriter(cliArgs.csvOutputFile), results);
+        if (cliArgs.jsonOutputFile != null) {
+          TestResult.printJsonLines(new FileWriter(cliArgs.jsonOutputFile), results);
+        }
       } catch (IOException e) {
         throw new UncheckedIOException(e);
       }
@@ -120,71 +175,202 @@ public class TestHarness {
   }
 
   private static Collection<TestResult> processPlayerJarDirectory(File directory,
-      List<MapBoard> boards) {
+      List<MapBoard> boards, int[] scoreBounds, int parallelism) {
     if (!directory.exists() || !directory.isDirectory()) {
       throw new RuntimeException(directory.getAbsolutePath() + " is not a directory");
     }
 
+    File[] jars = directory.listFiles(file -> file.getName().endsWith(".jar"));
+    Arrays.sort(jars);
+    if (parallelism > 1) {
+      return processInParallel(jars, boards, scoreBounds, parallelism);
+    }
+
     List<TestResult> results = new LinkedList<>();
-    for (File jar : directory.listFiles(file -> file.getName().endsWith(".jar"))) {
+    for (File jar : jars) {
       try {
         IPlayer player = loadPlayer(jar);
+        int b = 0;
         for (MapBoard board : boards) {
           System.out.println(
               "\nProcessing " + jar + " for " + player.getName() + " on board " + board.getName());
-          TestResult result = runBoard(jar.getName(), player, new MapBoard(board));
-          System.out.println(result);
+          TestResult result =
+              runBoard(jar.getName(), player, new MapBoard(board), scoreBounds[b++]);
+          printResult(result);
           results.add(result);
         }
       } catch (Exception e) {
         System.err.println("Problem processing jar " + jar.getName() + e.getMessage());
         e.printStackTrace();
       }
+      StudentClassLoader.evict(jar);
     }
     return results;
   }
 
-  public static TestResult runBoard(final String jar, final IPlayer player, final MapBoard board) {
-    ExecutorService service = Executors.newCachedThreadPool();
-    PrintStream oldOut = System.out;
-    ByteArrayOutputStream newOut = new ByteArrayOutputStream();
+  /**
+   * Plays every (jar, board) game on a pool of {@code parallelism} workers. Each worker loads the
+   * player class once per jar with its own class loader, and each game gets a new player instance,
+   * so games on different workers never share a player or its class loader. Results are returned
+   * in the same jar then board order as the sequential run.
+   */
+  private static Collection<TestResult> processInParallel(File[] jars, List<MapBoard> boards,
+      int[] scoreBounds, int parallelism) {
+    ExecutorService workers = Executors.newFixedThreadPool(parallelism);
     try {
-      // Silence any output coming from student code
-      // This is essential to running speedy solutions
-      System.setOut(new PrintStream(newOut));
-
-      runWithTimeOut(service, () -> player.analyzeBoard(new MapBoard(board)), SECONDS_FOR_ANALYZE);
+      List<Future<TestResult>> games = new ArrayList<>(jars.length * boards.size());
+      for (File jar : jars) {
+        int b = 0;
+        for (MapBoard board : boards) {
+          int scoreBound = scoreBounds[b++];
+          games.add(workers.submit(() -> runBoard(jar.getName(), workerPlayer(jar),
+              new MapBoard(board), scoreBound)));
+        }
+      }
 
-      while (!board.isComplete()) {
-        runWithTimeOut(service, () -> {
-          Move mv = player.selectMove(new MapBoard(board));
-          board.move(mv);
-        }, SECONDS_FOR_MOVE);
+      List<TestResult> results = new LinkedList<>();
+      int game = 0;
+      for (File jar : jars) {
+        boolean jarFailed = false;
+        for (MapBoard board : boards) {
+          Future<TestResult> result = games.get(game++);
+          try {
+            TestResult r = result.get();
+            if (!jarFailed) {
+              System.out.println("\nProcessed " + jar + " on board " + board.getName());
+              printResult(r);
+              results.add(r);
+            }
+          } catch (ExecutionException e) {
+            if (!jarFailed) {
+              System.err
+                  .println("Problem processing jar " + jar.getName() + e.getCause().getMessage());
+              e.getCause().printStackTrace();
+              jarFailed = true;
+            }
+          }
+        }
+        // Every game of the jar is done, so no worker loads it again
+        StudentClassLoader.evict(jar);
       }
+      return results;
+    } catch (InterruptedException e) {
+      throw new RuntimeException("Unexpected Framework error", e);
+    } finally {
+      workers.shutdownNow();
+    }
+  }
+
+  private static void printResult(TestResult result) {
+    System.out.println(result);
+    if (result.getException() != null && !result.getPlayerOutput().isEmpty()) {
+      System.out.println("Last player output:\n" + result.getPlayerOutput());
+    }
+  }
+
+  /**
+   * The highest score any player could get on a board, for {@link #runBoard(String, IPlayer,
+   * MapBoard, int)}. It takes a search from the start and from every treasure, so work it out once
+   * per board rather than once per game.
+   */
+  public static int scoreBound(MapBoard board) {
+    return DistanceFieldCache.getInstance().get(board).getScoreBound();
+  }
 
-      runWithTimeOut(service, () -> player.gameCompleted(new MapBoard(board)),
-          SECONDS_FOR_COMPLETE);
+  /**
+   * Plays a game without working out its score bound, which the result gives as -1.
+   */
+  public static TestResult runBoard(final String jar, final IPlayer player, final MapBoard board) {
+    return runBoard(jar, player, board, -1);
+  }
 
-      return new TestResult(jar, player.getName(), board.getName(), board.getScore());
+  /**
+   * Plays a game of a player on a board.
+   *
+   * @param scoreBound The board's {@link #scoreBound(MapBoard)}, for the result
+   */
+  public static TestResult runBoard(final String jar, final IPlayer player, final MapBoard board,
+      final int scoreBound) {
+    // Keep output coming from student code off the console, holding on to only the end of it
+    // This is essential to running speedy solutions
+    OutputRouter router = OutputRouter.install();
+    OutputRingBuffer output = new OutputRingBuffer(outputCaptureBytes);
+    OutputStream previousRoute = router.route(output);
 
+    // The whole game plays on one thread, which inherits the output route. The watchdog abandons
+    // it if the player runs over budget.
+    GameMetrics metrics = new GameMetrics();
+    MoveWatchdog.Watch[] watch = new MoveWatchdog.Watch[1];
+    Thread game = new Thread(() -> {
+      Throwable failure = null;
+      try {
+        playGame(watch[0], player, board, metrics);
+      } catch (Throwable t) {
+        failure = t;
+      } finally {
+        watch[0].finish(failure);
+      }
+    }, "game-" + board.getName());
+    game.setDaemon(true);
+
+    MoveWatchdog watchdog = MoveWatchdog.getInstance();
+    watch[0] = watchdog.watch(game, cpuBudget, totalMoveNanos);
+    TestResult result;
+    try {
+      game.start();
+      watch[0].await();
+
+      if (watch[0].getTimeout() != null) {
+        // student solution never returned us control
+        result = new TestResult(jar, player.getName(), board.getName(), 0, watch[0].getTimeout());
+      } else if (watch[0].getFailure() != null) {
+        // Problem with student solution
+        result = new TestResult(jar, player.getName(), board.getName(), 0, watch[0].getFailure());
+      } else {
+        result = new TestResult(jar, player.getName(), board.getName(), board.getScore());
+      }
     } catch (InterruptedException e) {
+      game.interrupt();
       throw new RuntimeException("Unexpected Framework error", e);
-    } catch (ExecutionException e) {
-      // Problem with student solution
-      return new TestResult(jar, player.getName(), board.getName(), 0, e.getCause());
-    } catch (TimeoutException e) {
-      // student solution never returned us control
-      return new TestResult(jar, player.getName(), board.getName(), 0, e);
     } finally {
-      System.setOut(oldOut);
-      service.shutdownNow();
+      watchdog.unwatch(watch[0]);
+      router.route(previousRoute);
     }
+    result.setPlayerOutput(output.toString());
+    result.setMetrics(metrics);
+    result.setScoreBound(scoreBound);
+    return result;
   }
 
-  private static void runWithTimeOut(ExecutorService service, Runnable r, long seconds)
-      throws InterruptedException, ExecutionException, TimeoutException {
-    Future<?> f = service.submit(r);
-    f.get(seconds, TimeUnit.SECONDS);
+  private static void playGame(MoveWatchdog.Watch watch, IPlayer player, MapBoard board,
+      GameMetrics metrics) {
+    long allocatedAtStart = GameMetrics.currentThreadAllocatedBytes();
+    try {
+      metrics.recordAnalyze(watch.run("analyzeBoard",
+          TimeUnit.SECONDS.toNanos(SECONDS_FOR_ANALYZE), false,
+          () -> player.analyzeBoard(copyBoard(board, metrics))));
+
+      while (!board.isComplete()) {
+        metrics.recordMove(
+            watch.run("selectMove", TimeUnit.SECONDS.toNanos(SECONDS_FOR_MOVE), true, () -> {
+              Move mv = player.selectMove(copyBoard(board, metrics));
+              board.move(mv);
+            }));
+      }
+
+      metrics.recordComplete(watch.run("gameCompleted",
+          TimeUnit.SECONDS.toNanos(SECONDS_FOR_COMPLETE), false,
+          () -> player.gameCompleted(copyBoard(board, metrics))));
+    } finally {
+      if (allocatedAtStart >= 0) {
+        metrics.recordAllocatedBytes(GameMetrics.currentThreadAllocatedBytes() - allocatedAtStart);
+      }
+    }
+  }
+
+  private static MapBoard copyBoard(MapBoard board, GameMetrics metrics) {
+    metrics.recordBoardCopy();
+    return new MapBoard(board);
   }
 
   private static class CommandLineArgs {
@@ -196,14 +382,48 @@ public class TestHarness {
       return new File(boardDirectory);
     }
 
+    public Path getCacheDirectory() {
+      return (cacheDirectory != null) ? Paths.get(cacheDirectory) : BoardCache.getDirectory();
+    }
+
+    public int getParallelism() {
+      return parallelism;
+    }
+
+    public int getOutputCaptureBytes() {
+      return outputKb * 1024;
+    }
+
+    public long getTotalMoveNanos() {
+      return (totalMoveSeconds > 0) ? TimeUnit.SECONDS.toNanos(totalMoveSeconds) : Long.MAX_VALUE;
+    }
+
+    public boolean isCpuBudget() {
+      return cpuBudget;
+    }
+
     private final String jarDirectory;
     private final String boardDirectory;
+    private final String cacheDirectory;
     private final String csvOutputFile;
+    private final String jsonOutputFile;
+    private final int parallelism;
+    private final int outputKb;
+    private final long totalMoveSeconds;
+    private final boolean cpuBudget;
 
-    private CommandLineArgs(String jarDirectory, String boardDirectory, String csvOutputFile) {
+    private CommandLineArgs(String jarDirectory, String boardDirectory, String cacheDirectory,
+        String csvOutputFile, String jsonOutputFile, int parallelism, int outputKb,
+        long totalMoveSeconds, boolean cpuBudget) {
       this.jarDirectory = jarDirectory;
       this.boardDirectory = boardDirectory;
+      this.cacheDirectory = cacheDirectory;
       this.csvOutputFile = csvOutputFile;
+      this.jsonOutputFile = jsonOutputFile;
+      this.parallelism = parallelism;
+      this.outputKb = outputKb;
+      this.totalMoveSeconds = totalMoveSeconds;
+      this.cpuBudget = cpuBudget;
     }
 
     public static CommandLineArgs parse(String[] args) {
@@ -221,11 +441,20 @@ public class TestHarness {
           .longOpt("boarddir") //
           .argName("dir") //
           .hasArg() //
-          .desc("Directory with Board csvs") //
+          .desc("Directory with Board csvs or binary board files") //
           .valueSeparator('=') //
           .required() //
           .build());
 
+      cmdOps.addOption(Option.builder("d") //
+          .longOpt("cachedir") //
+          .argName("dir") //
+          .hasArg() //
+          .desc("Directory to keep cache files of the boards in, so they load faster next time"
+              + " (default the " + BoardCache.DIRECTORY_PROPERTY + " system property, or none)") //
+          .valueSeparator('=') //
+          .build());
+
       cmdOps.addOption(Option.builder("c") //
           .longOpt("csvfile") //
           .argName("file") //
@@ -235,12 +464,52 @@ public class TestHarness {
           .required() //
           .build());
 
+      cmdOps.addOption(Option.builder("l") //
+          .longOpt("jsonfile") //
+          .argName("file") //
+          .hasArg() //
+          .desc("Also write the results as JSON lines, one game per line") //
+          .valueSeparator('=') //
+          .build());
+
+      cmdOps.addOption(Option.builder("p") //
+          .longOpt("parallelism") //
+          .argName("n") //
+          .hasArg() //
+          .desc("Number of games to run at once (default 1)") //
+          .valueSeparator('=') //
+          .build());
+
+      cmdOps.addOption(Option.builder("o") //
+          .longOpt("outputkb") //
+          .argName("kb") //
+          .hasArg() //
+          .desc("KB of player output to keep per game, 0 discards it (default 64)") //
+          .valueSeparator('=') //
+          .build());
+
+      cmdOps.addOption(Option.builder("t") //
+          .longOpt("totalmoveseconds") //
+          .argName("seconds") //
+          .hasArg() //
+          .desc("Budget for all of a game's selectMove calls together (default none)") //
+          .valueSeparator('=') //
+          .build());
+
+      cmdOps.addOption(Option.builder() //
+          .longOpt("cpubudget") //
+          .desc("Measure time budgets in player CPU time instead of wall clock time") //
+          .build());
+
       CommandLineParser parser = new DefaultParser();
       try {
         CommandLine line = parser.parse(cmdOps, args);
         return new CommandLineArgs(line.getOptionValue("j"), line.getOptionValue("b"),
-            line.getOptionValue("c"));
-      } catch (ParseException e) {
+            line.getOptionValue("d"), line.getOptionValue("c"), line.getOptionValue("l"),
+            Integer.parseInt(line.getOptionValue("p", "1")),
+            Integer.parseInt(line.getOptionValue("o", "64")),
+            Long.parseLong(line.getOptionValue("t", "0")), line.hasOption("cpubudget"));
+      } catch (ParseException | NumberFormatException e) {
         System.err.println("Invalid Usage: " + e.getMessage());
         HelpFormatter formatter = new HelpFormatter();
         formatter.printHelp("com.ibm.vie.mazerunner.util.TestHarness", cmdOps, true);
@@ -15,6 +15,7 @@
 
 package com.ibm.vie.mazerunner.util;
 
+import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.UncheckedIOException;
@@ -27,9 +28,14 @@ public class TestResult {
   private final String boardName;
   private final int score;
   private final Throwable exception;
+  private String playerOutput = "";
+  private GameMetrics metrics = new GameMetrics();
+  private int scoreBound = -1;
 
-  private static String[] CSV_HEADERS =
-      {"Jar Path", "Student Name", "Board Name", "Score", "Failure"};
+  private static String[] CSV_HEADERS = {"Jar Path", "Student Name", "Board Name", "Score",
+      "Failure", "Analyze ms", "Moves", "Total Move ms", "Move p50 ms", "Move p95 ms",
+      "Move p99 ms", "Move Max ms", "Complete ms", "Allocated Bytes", "Board Copies",
+      "Score Bound"};
 
   public TestResult(String jarPath, String studentName, String boardName, int score) {
     this.jarPath = jarPath;
@@ -56,12 +62,53 @@ public class TestResult {
     return score;
   }
 
+  /**
+   * @return the last of what the player printed during the game
+   */
+  public String getPlayerOutput() {
+    return playerOutput;
+  }
+
+  void setPlayerOutput(String playerOutput) {
+    this.playerOutput = playerOutput;
+  }
+
+  /**
+   * @return how long each phase of the game took
+   */
+  public GameMetrics getMetrics() {
+    return metrics;
+  }
+
+  void setMetrics(GameMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * @return the highest score the board could give, from its
+   *         {@link com.ibm.vie.mazerunner.DistanceField}, or -1 if it was not worked out
+   */
+  public int getScoreBound() {
+    return scoreBound;
+  }
+
+  void setScoreBound(int scoreBound) {
+    this.scoreBound = scoreBound;
+  }
+
   public static void printResults(FileWriter fw, Iterable<TestResult> results) {
     CSVFormat format = CSVFormat.DEFAULT.builder().setHeader(TestResult.CSV_HEADERS).build();
     try (CSVPrinter printer = new CSVPrinter(fw, format)) {
       for (TestResult result : results) {
+        GameMetrics m = result.metrics;
         printer.printRecord(result.jarPath, result.studentName, result.boardName, result.score,
-            (result.exception != null) ? result.exception.getClass().getSimpleName() : "");
+            result.getFailureName(), GameMetrics.millis(m.getAnalyzeNanos()), m.getMoveCount(),
+            GameMetrics.millis(m.getTotalMoveNanos()),
+            GameMetrics.millis(m.getMovePercentileNanos(50)),
+            GameMetrics.millis(m.getMovePercentileNanos(95)),
+            GameMetrics.millis(m.getMovePercentileNanos(99)),
+            GameMetrics.millis(m.getMaxMoveNanos()), GameMetrics.millis(m.getCompleteNanos()),
+            m.getAllocatedBytes(), m.getBoardCopies(), result.scoreBound);
       }
     } catch (IOException e) {
       throw new UncheckedIOException(e);
@@ -69,9 +116,62 @@ public class TestResult {
 
   }
 
+  /**
+   * Writes the results as JSON lines, one object per game, for loading into dashboards. Times are
+   * in nanoseconds.
+   *
+   * @param fw Where to write, closed when done
+   * @param results The results to write
+   */
+  public static void printJsonLines(FileWriter fw, Iterable<TestResult> results) {
+    try (BufferedWriter writer = new BufferedWriter(fw)) {
+      for (TestResult result : results) {
+        GameMetrics m = result.metrics;
+        writer.write("{\"jarPath\":" + jsonString(result.jarPath) //
+            + ",\"studentName\":" + jsonString(result.studentName) //
+            + ",\"boardName\":" + jsonString(result.boardName) //
+            + ",\"score\":" + result.score //
+            + ",\"failure\":" + jsonString(result.getFailureName()) //
+            + ",\"analyzeNanos\":" + m.getAnalyzeNanos() //
+            + ",\"moves\":" + m.getMoveCount() //
+            + ",\"totalMoveNanos\":" + m.getTotalMoveNanos() //
+            + ",\"moveP50Nanos\":" + m.getMovePercentileNanos(50) //
+            + ",\"moveP95Nanos\":" + m.getMovePercentileNanos(95) //
+            + ",\"moveP99Nanos\":" + m.getMovePercentileNanos(99) //
+            + ",\"moveMaxNanos\":" + m.getMaxMoveNanos() //
+            + ",\"completeNanos\":" + m.getCompleteNanos() //
+            + ",\"allocatedBytes\":" + m.getAllocatedBytes() //
+            + ",\"boardCopies\":" + m.getBoardCopies() //
+            + ",\"scoreBound\":" + result.scoreBound + "}");
+        writer.newLine();
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static String jsonString(String value) {
+    StringBuilder sb = new StringBuilder("\"");
+    for (char c : value.toCharArray()) {
+      if (c == '"' || c == '\\') {
+        sb.append('\\').append(c);
+      } else if (c < ' ') {
+        sb.append(String.format("\\u%04x", (int) c));
+      } else {
+        sb.append(c);
+      }
+    }
+    return sb.append('"').toString();
+  }
+
+  private String getFailureName() {
+    return (exception != null) ? exception.getClass().getSimpleName() : "";
+  }
+
   public String toString() {
     return "Jar=" + jarPath + "\n" + "Name=" + studentName + "\nBoard=" + boardName + "\nScore="
         + score + "\nError="
-        + ((this.exception != null) ? this.exception.getClass().getSimpleName() : "null");
+        + ((this.exception != null) ? this.exception.getClass().getSimpleName() : "null")
+        + "\nScore Bound=" + scoreBound + "\nMetrics=" + metrics;
   }
 }